@@ -0,0 +1,134 @@
+package com.taxitot.loadsim;
+
+import okhttp3.OkHttpClient;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives N simulated drivers against a running driver-api and reports
+ * throughput and latency percentiles for RidesGateway's update_location
+ * handler, and for trip_progress when real rows are given with --seed-file
+ * (see SimConfig.usage()).
+ *
+ *   mvn -q compile exec:java -Dexec.args="--drivers=300 --duration=180"
+ */
+public final class FleetSimulator {
+
+    public static void main(String[] args) throws InterruptedException {
+        SimConfig config;
+        try {
+            config = SimConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        System.out.printf("Simulating %d drivers against %s: %.1f Hz GPS, %ds ramp-up + %ds, %s%n",
+                config.drivers, config.url, config.gpsHz, config.rampUp.toSeconds(), config.duration.toSeconds(),
+                config.measuresProgress() ? "seeded ids, trip_progress included"
+                        : String.format("synthetic ids (%.0f%% on trip), update_location only",
+                                config.onTripRatio * 100));
+
+        Metrics metrics = new Metrics();
+        // One client for every socket: shared dispatcher and connection pool
+        OkHttpClient http = new OkHttpClient.Builder()
+                .readTimeout(1, TimeUnit.MINUTES)
+                .build();
+
+        long started = System.nanoTime();
+        long rampNanos = config.rampUp.toNanos();
+        long steadyFrom = started + rampNanos;
+        long deadline = steadyFrom + config.duration.toNanos();
+
+        ExecutorService drivers = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < config.drivers; i++) {
+            long startDelay = rampNanos * i / config.drivers;
+            drivers.execute(new SimulatedDriver(i, config, metrics, http, startDelay, deadline));
+        }
+
+        Snapshot previous = Snapshot.of(metrics, started);
+        Snapshot steadyStart = null;
+        long reportNanos = config.reportInterval.toNanos();
+        while (System.nanoTime() < deadline) {
+            long now = System.nanoTime();
+            Thread.sleep(Math.max(1, Math.min(reportNanos, deadline - now) / 1_000_000));
+            Snapshot current = Snapshot.of(metrics, System.nanoTime());
+            if (steadyStart == null && current.atNanos >= steadyFrom) {
+                steadyStart = current;
+            }
+            printInterval(config, metrics, previous, current, started);
+            previous = current;
+        }
+
+        drivers.shutdown();
+        if (!drivers.awaitTermination(30, TimeUnit.SECONDS)) {
+            drivers.shutdownNow();
+        }
+        printSummary(config, metrics, steadyStart != null ? steadyStart : Snapshot.of(metrics, started),
+                previous, started);
+
+        http.dispatcher().executorService().shutdown();
+        http.connectionPool().evictAll();
+        // Socket.IO's event thread is not a daemon
+        System.exit(metrics.connectFailures.sum() == config.drivers ? 1 : 0);
+    }
+
+    private record Snapshot(long atNanos, long locationSent, long locationEchoed, long progressSent,
+            long progressEchoed) {
+
+        static Snapshot of(Metrics metrics, long atNanos) {
+            return new Snapshot(atNanos, metrics.locationSent.sum(), metrics.locationEchoed.sum(),
+                    metrics.progressSent.sum(), metrics.progressEchoed.sum());
+        }
+
+        double seconds(Snapshot since) {
+            return Math.max(1e-9, (atNanos - since.atNanos) / 1e9);
+        }
+    }
+
+    private static void printInterval(SimConfig config, Metrics metrics, Snapshot previous, Snapshot current,
+            long started) {
+        double seconds = current.seconds(previous);
+        System.out.printf("[%4ds] drivers=%d  update_location %.0f/s (echo %.0f/s)  trip_progress %.1f/s"
+                        + "  errors=%d lost=%d%n",
+                (current.atNanos - started) / 1_000_000_000L,
+                metrics.connectedDrivers.get(),
+                (current.locationSent - previous.locationSent) / seconds,
+                (current.locationEchoed - previous.locationEchoed) / seconds,
+                (current.progressSent - previous.progressSent) / seconds,
+                metrics.serverErrors.sum(), metrics.lost.sum());
+        System.out.println("        location " + metrics.locationLatency.drainInterval());
+        if (config.measuresProgress()) {
+            System.out.println("        progress " + metrics.progressLatency.drainInterval());
+        }
+    }
+
+    private static void printSummary(SimConfig config, Metrics metrics, Snapshot steadyStart, Snapshot end,
+            long started) {
+        double seconds = end.seconds(steadyStart);
+        System.out.println();
+        System.out.println("=== Summary (steady state, " + Math.round(seconds) + "s) ===");
+        System.out.printf("update_location  sent %.1f msg/s, echoed %.1f msg/s%n",
+                (end.locationSent - steadyStart.locationSent) / seconds,
+                (end.locationEchoed - steadyStart.locationEchoed) / seconds);
+        if (config.measuresProgress()) {
+            System.out.printf("trip_progress    sent %.1f msg/s, echoed %.1f msg/s%n",
+                    (end.progressSent - steadyStart.progressSent) / seconds,
+                    (end.progressEchoed - steadyStart.progressEchoed) / seconds);
+        } else {
+            System.out.println("trip_progress    not measured (needs --seed-file)");
+        }
+        System.out.println("latency (whole run)");
+        System.out.println("  location  " + metrics.locationLatency.total());
+        if (config.measuresProgress()) {
+            System.out.println("  progress  " + metrics.progressLatency.total());
+        }
+        System.out.println("  connect   " + metrics.connectLatency.total());
+        System.out.printf("connect failures=%d disconnects=%d server errors=%d lost echoes=%d (run %ds)%n",
+                metrics.connectFailures.sum(), metrics.disconnects.sum(), metrics.serverErrors.sum(),
+                metrics.lost.sum(), (System.nanoTime() - started) / 1_000_000_000L);
+    }
+}
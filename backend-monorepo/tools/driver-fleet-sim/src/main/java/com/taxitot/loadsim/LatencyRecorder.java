@@ -0,0 +1,72 @@
+package com.taxitot.loadsim;
+
+import java.util.Arrays;
+
+/**
+ * Raw latency samples with interval and whole-run percentiles. Runs are
+ * minutes long at a few thousand samples per second, so keeping every
+ * sample is cheaper than getting histogram buckets right.
+ */
+final class LatencyRecorder {
+
+    record Summary(long count, double p50Ms, double p90Ms, double p99Ms, double p999Ms, double maxMs) {
+
+        static final Summary EMPTY = new Summary(0, 0, 0, 0, 0, 0);
+
+        @Override
+        public String toString() {
+            if (count == 0) {
+                return "n=0";
+            }
+            return String.format("n=%d p50=%.1fms p90=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms",
+                    count, p50Ms, p90Ms, p99Ms, p999Ms, maxMs);
+        }
+    }
+
+    private long[] interval = new long[1024];
+    private int intervalSize;
+    private long[] total = new long[1024];
+    private int totalSize;
+
+    synchronized void record(long latencyNanos) {
+        if (intervalSize == interval.length) {
+            interval = Arrays.copyOf(interval, interval.length * 2);
+        }
+        interval[intervalSize++] = latencyNanos;
+    }
+
+    /** Summary of samples since the previous call; they move into the run total. */
+    synchronized Summary drainInterval() {
+        Summary summary = summarize(interval, intervalSize);
+        if (totalSize + intervalSize > total.length) {
+            total = Arrays.copyOf(total, Math.max(total.length * 2, totalSize + intervalSize));
+        }
+        System.arraycopy(interval, 0, total, totalSize, intervalSize);
+        totalSize += intervalSize;
+        intervalSize = 0;
+        return summary;
+    }
+
+    /** Whole run, including samples not drained yet. */
+    synchronized Summary total() {
+        long[] all = Arrays.copyOf(total, totalSize + intervalSize);
+        System.arraycopy(interval, 0, all, totalSize, intervalSize);
+        return summarize(all, all.length);
+    }
+
+    private static Summary summarize(long[] samples, int size) {
+        if (size == 0) {
+            return Summary.EMPTY;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return new Summary(size, percentileMs(sorted, 0.50), percentileMs(sorted, 0.90),
+                percentileMs(sorted, 0.99), percentileMs(sorted, 0.999), sorted[size - 1] / 1e6);
+    }
+
+    // Nearest-rank percentile
+    static double percentileMs(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+}
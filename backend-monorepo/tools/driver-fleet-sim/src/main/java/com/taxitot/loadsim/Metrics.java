@@ -0,0 +1,30 @@
+package com.taxitot.loadsim;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency recorders shared by all simulated drivers.
+ */
+final class Metrics {
+
+    final LongAdder locationSent = new LongAdder();
+    final LongAdder locationEchoed = new LongAdder();
+    final LongAdder progressSent = new LongAdder();
+    final LongAdder progressEchoed = new LongAdder();
+    // Sent but never echoed within the timeout
+    final LongAdder lost = new LongAdder();
+    // 'exception' events from the gateway (failed handlers, e.g. DB errors;
+    // with synthetic ids this includes the 30s position write per driver)
+    final LongAdder serverErrors = new LongAdder();
+    final LongAdder connectFailures = new LongAdder();
+    final LongAdder disconnects = new LongAdder();
+    final AtomicInteger connectedDrivers = new AtomicInteger();
+
+    /** update_location from driver to driver_location_update at the rider. */
+    final LatencyRecorder locationLatency = new LatencyRecorder();
+    /** trip_progress from driver to trip_update at the rider (includes the fare DB write; --seed-file only). */
+    final LatencyRecorder progressLatency = new LatencyRecorder();
+    /** Socket connect handshake. */
+    final LatencyRecorder connectLatency = new LatencyRecorder();
+}
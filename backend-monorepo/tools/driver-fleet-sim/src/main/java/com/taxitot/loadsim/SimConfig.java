@@ -0,0 +1,151 @@
+package com.taxitot.loadsim;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line options, all of the form --name=value.
+ */
+final class SimConfig {
+
+    /** Real rows from --seed-file; clientId and tripId are null for drivers off trip. */
+    record SeededDriver(String driverId, String clientId, String tripId) {
+    }
+
+    String url = "http://localhost:3004";
+    int drivers = 100;
+    Duration duration = Duration.ofSeconds(120);
+    Duration rampUp = Duration.ofSeconds(10);
+    // Mapbox/FusedLocation deliver ~1 fix per second while navigating
+    double gpsHz = 1.0;
+    // Share of drivers on a trip (synthetic ids): they send activeClientId
+    double onTripRatio = 0.5;
+    Duration progressInterval = Duration.ofSeconds(5);
+    double speedKmh = 30;
+    // Luanda
+    double centerLat = -8.8390;
+    double centerLng = 13.2890;
+    double radiusKm = 8;
+    String idPrefix = "sim";
+    boolean goOnline = false;
+    // null: synthetic ids, update_location / driver_location_update only
+    List<SeededDriver> seeded;
+    Duration reportInterval = Duration.ofSeconds(10);
+    Duration echoTimeout = Duration.ofSeconds(10);
+    long seed = 42;
+
+    static SimConfig parse(String[] args) {
+        SimConfig config = new SimConfig();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                throw new IllegalArgumentException(usage());
+            }
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Bad option " + arg + "\n" + usage());
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "url" -> config.url = value;
+                case "drivers" -> config.drivers = Integer.parseInt(value);
+                case "duration" -> config.duration = Duration.ofSeconds(Long.parseLong(value));
+                case "ramp-up" -> config.rampUp = Duration.ofSeconds(Long.parseLong(value));
+                case "gps-hz" -> config.gpsHz = Double.parseDouble(value);
+                case "on-trip" -> config.onTripRatio = Double.parseDouble(value);
+                case "progress-every" -> config.progressInterval = Duration.ofSeconds(Long.parseLong(value));
+                case "speed-kmh" -> config.speedKmh = Double.parseDouble(value);
+                case "center" -> {
+                    String[] latLng = value.split(",");
+                    config.centerLat = Double.parseDouble(latLng[0]);
+                    config.centerLng = Double.parseDouble(latLng[1]);
+                }
+                case "radius-km" -> config.radiusKm = Double.parseDouble(value);
+                case "id-prefix" -> config.idPrefix = value;
+                case "go-online" -> config.goOnline = Boolean.parseBoolean(value);
+                case "seed-file" -> config.seeded = readSeedFile(Path.of(value));
+                case "report-every" -> config.reportInterval = Duration.ofSeconds(Long.parseLong(value));
+                case "seed" -> config.seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option --" + name + "\n" + usage());
+            }
+        }
+        if (config.drivers <= 0 || config.gpsHz <= 0) {
+            throw new IllegalArgumentException("--drivers and --gps-hz must be positive");
+        }
+        if (config.seeded == null && config.goOnline) {
+            // toggle_online updates drivers by id and throws for rows that don't exist
+            throw new IllegalArgumentException("--go-online needs --seed-file with real driver ids");
+        }
+        if (config.seeded != null && config.seeded.size() < config.drivers) {
+            throw new IllegalArgumentException("--seed-file has " + config.seeded.size() + " rows for "
+                    + config.drivers + " drivers");
+        }
+        return config;
+    }
+
+    /** Trip progress is only measured against seeded trips; see readSeedFile. */
+    boolean measuresProgress() {
+        return seeded != null;
+    }
+
+    /**
+     * One driver per line: driverId[,clientId,tripId]. Blank lines and lines
+     * starting with # are skipped.
+     */
+    static List<SeededDriver> readSeedFile(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read --seed-file " + file + ": " + e.getMessage());
+        }
+        List<SeededDriver> rows = new ArrayList<>();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\\s*,\\s*");
+            if (fields.length == 1) {
+                rows.add(new SeededDriver(fields[0], null, null));
+            } else if (fields.length == 3) {
+                rows.add(new SeededDriver(fields[0], fields[1], fields[2]));
+            } else {
+                throw new IllegalArgumentException("Bad --seed-file line, expected driverId[,clientId,tripId]: "
+                        + line);
+            }
+        }
+        return rows;
+    }
+
+    static String usage() {
+        return """
+                Usage: FleetSimulator [--option=value ...]
+                  --url=http://localhost:3004   driver-api base URL
+                  --drivers=100                 simulated drivers
+                  --duration=120                seconds of steady load after ramp-up
+                  --ramp-up=10                  seconds over which drivers connect
+                  --gps-hz=1                    update_location rate per driver
+                  --on-trip=0.5                 share of drivers with a rider socket (synthetic ids only)
+                  --progress-every=5            seconds between trip_progress per on-trip driver
+                  --speed-kmh=30                average driving speed
+                  --center=-8.8390,13.2890      area center
+                  --radius-km=8                 area radius
+                  --id-prefix=sim               synthetic ids: name-based UUIDs of <prefix>-driver-N ...
+                  --seed-file=PATH              real rows, one driverId[,clientId,tripId] per line
+                  --go-online=false             send toggle_online (needs --seed-file)
+                  --report-every=10             seconds between interim reports
+                  --seed=42                     route randomness
+
+                Without --seed-file only update_location -> driver_location_update is measured.
+                The ids match no rows, so nothing is written; the position write the gateway
+                makes every 30s per driver fails and is counted in server errors.
+                With --seed-file, drivers with a trip also send trip_progress, which writes
+                final_fare on those trips: use a scratch database.""";
+    }
+}
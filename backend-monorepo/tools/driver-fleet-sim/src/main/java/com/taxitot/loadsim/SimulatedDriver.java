@@ -0,0 +1,266 @@
+package com.taxitot.loadsim;
+
+import io.socket.client.IO;
+import io.socket.client.Socket;
+import io.socket.engineio.client.transports.WebSocket;
+import okhttp3.OkHttpClient;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One driver app, run on its own virtual thread.
+ *
+ * Joins as role "driver" and sends update_location at the GPS rate, with
+ * the same payloads as DashboardScreen. Drivers on a trip also open a
+ * second socket as their rider (role "client") and send activeClientId.
+ * Latency is measured end to end: from the emit to the rider receiving
+ * driver_location_update / trip_update. RidesGateway doesn't ack these
+ * events, so the rider echo is what there is to time.
+ *
+ * Synthetic ids are UUIDs (the id columns are uuid) that match no rows.
+ * The gateway relays driver_location_update before touching the DB, so that
+ * path is measured as is. trip_progress writes the fare first and never
+ * echoes for a missing trip, so it is only sent for trips from --seed-file.
+ */
+final class SimulatedDriver implements Runnable {
+
+    private static final long CONNECT_TIMEOUT_MS = 10_000;
+
+    private final SimConfig config;
+    private final Metrics metrics;
+    private final OkHttpClient http;
+    private final SyntheticRoute route;
+    private final long startDelayNanos;
+    private final long deadlineNanos;
+
+    private final String driverId;
+    private final String clientId;
+    private final String tripId;
+    private final boolean onTrip;
+
+    // Send time by echo key, removed when the rider sees it
+    private final Map<String, Long> pendingLocations = new ConcurrentHashMap<>();
+    private final Map<Long, Long> pendingProgress = new ConcurrentHashMap<>();
+
+    private Socket driverSocket;
+    private Socket riderSocket;
+    private long fare;
+
+    SimulatedDriver(int index, SimConfig config, Metrics metrics, OkHttpClient http, long startDelayNanos,
+            long deadlineNanos) {
+        this.config = config;
+        this.metrics = metrics;
+        this.http = http;
+        this.startDelayNanos = startDelayNanos;
+        this.deadlineNanos = deadlineNanos;
+        Random random = new Random(config.seed + index);
+        this.route = new SyntheticRoute(random, config.centerLat, config.centerLng, config.radiusKm, config.speedKmh);
+        if (config.seeded != null) {
+            SimConfig.SeededDriver row = config.seeded.get(index);
+            this.driverId = row.driverId();
+            this.clientId = row.clientId();
+            this.tripId = row.tripId();
+            this.onTrip = row.tripId() != null;
+        } else {
+            this.driverId = syntheticId(config.idPrefix + "-driver-" + index);
+            this.clientId = syntheticId(config.idPrefix + "-client-" + index);
+            this.tripId = null;
+            this.onTrip = random.nextDouble() < config.onTripRatio;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(startDelayNanos));
+            if (!connect()) {
+                return;
+            }
+            metrics.connectedDrivers.incrementAndGet();
+            try {
+                drive();
+            } finally {
+                metrics.connectedDrivers.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            disconnect();
+        }
+    }
+
+    private boolean connect() throws InterruptedException {
+        driverSocket = openSocket();
+        if (driverSocket == null) {
+            return false;
+        }
+        driverSocket.on("exception", args -> metrics.serverErrors.increment());
+        driverSocket.emit("join", json("userId", driverId, "role", "driver"));
+        if (config.goOnline) {
+            driverSocket.emit("toggle_online", json("userId", driverId, "isOnline", true));
+        }
+
+        if (onTrip) {
+            riderSocket = openSocket();
+            if (riderSocket == null) {
+                return false;
+            }
+            riderSocket.on("driver_location_update", args -> onLocationEcho((JSONObject) args[0]));
+            riderSocket.on("trip_update", args -> onProgressEcho((JSONObject) args[0]));
+            riderSocket.emit("join", json("userId", clientId, "role", "client"));
+        }
+        return true;
+    }
+
+    private Socket openSocket() throws InterruptedException {
+        IO.Options options = IO.Options.builder()
+                // One connection per simulated phone, no multiplexing
+                .setForceNew(true)
+                .setReconnection(false)
+                .setTransports(new String[] { WebSocket.NAME })
+                .build();
+        options.webSocketFactory = http;
+        options.callFactory = http;
+
+        Socket socket = IO.socket(URI.create(config.url), options);
+        CountDownLatch connected = new CountDownLatch(1);
+        long started = System.nanoTime();
+        socket.once(Socket.EVENT_CONNECT, args -> {
+            metrics.connectLatency.record(System.nanoTime() - started);
+            connected.countDown();
+        });
+        socket.once(Socket.EVENT_CONNECT_ERROR, args -> connected.countDown());
+        socket.on(Socket.EVENT_DISCONNECT, args -> {
+            // Our own close() at the end of the run isn't a dropped connection
+            if (args.length == 0 || !"io client disconnect".equals(args[0])) {
+                metrics.disconnects.increment();
+            }
+        });
+        socket.connect();
+
+        if (!connected.await(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS) || !socket.connected()) {
+            metrics.connectFailures.increment();
+            socket.off();
+            socket.close();
+            return null;
+        }
+        return socket;
+    }
+
+    private void drive() throws InterruptedException {
+        long tickNanos = (long) (1e9 / config.gpsHz);
+        long progressNanos = config.progressInterval.toNanos();
+        long echoTimeoutNanos = config.echoTimeout.toNanos();
+        long nextTick = System.nanoTime();
+        long nextProgress = nextTick + progressNanos;
+
+        while (nextTick < deadlineNanos && driverSocket.connected()) {
+            route.advance(tickNanos / 1e9);
+            double[] fix = route.fix();
+            sendLocation(fix);
+            if (tripId != null && nextTick >= nextProgress) {
+                sendProgress(fix);
+                nextProgress += progressNanos;
+            }
+            expirePending(nextTick - echoTimeoutNanos);
+
+            // Fixed rate: a slow emit doesn't push the schedule back
+            nextTick += tickNanos;
+            long sleep = nextTick - System.nanoTime();
+            if (sleep > 0) {
+                Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+            }
+        }
+    }
+
+    private void sendLocation(double[] fix) {
+        JSONObject payload = json("driverId", driverId, "lat", fix[0], "lng", fix[1],
+                "activeClientId", onTrip ? clientId : JSONObject.NULL);
+        if (onTrip) {
+            pendingLocations.put(locationKey(fix[0], fix[1]), System.nanoTime());
+        }
+        driverSocket.emit("update_location", payload);
+        metrics.locationSent.increment();
+    }
+
+    private void sendProgress(double[] fix) {
+        // Fare in Kz grows with distance; also the echo key, so keep it unique
+        fare = Math.max(fare + 1, 500 + Math.round(route.traveledMeters() * 0.2));
+        JSONObject payload = json("tripId", tripId, "clientId", clientId, "currentFare", fare,
+                "coords", json("lat", fix[0], "lng", fix[1]));
+        pendingProgress.put(fare, System.nanoTime());
+        driverSocket.emit("trip_progress", payload);
+        metrics.progressSent.increment();
+    }
+
+    private void onLocationEcho(JSONObject data) {
+        long received = System.nanoTime();
+        Long sent = pendingLocations.remove(locationKey(data.optDouble("lat"), data.optDouble("lng")));
+        if (sent != null) {
+            metrics.locationLatency.record(received - sent);
+            metrics.locationEchoed.increment();
+        }
+    }
+
+    private void onProgressEcho(JSONObject data) {
+        long received = System.nanoTime();
+        Long sent = pendingProgress.remove(data.optLong("currentFare"));
+        if (sent != null) {
+            metrics.progressLatency.record(received - sent);
+            metrics.progressEchoed.increment();
+        }
+    }
+
+    private void expirePending(long sentBefore) {
+        expire(pendingLocations.values().iterator(), sentBefore);
+        expire(pendingProgress.values().iterator(), sentBefore);
+    }
+
+    private void expire(Iterator<Long> sentTimes, long sentBefore) {
+        while (sentTimes.hasNext()) {
+            if (sentTimes.next() < sentBefore) {
+                sentTimes.remove();
+                metrics.lost.increment();
+            }
+        }
+    }
+
+    private void disconnect() {
+        if (driverSocket != null) {
+            driverSocket.close();
+        }
+        if (riderSocket != null) {
+            riderSocket.close();
+        }
+    }
+
+    private static String syntheticId(String name) {
+        return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static String locationKey(double lat, double lng) {
+        return lat + "," + lng;
+    }
+
+    private static JSONObject json(Object... keysAndValues) {
+        JSONObject object = new JSONObject();
+        try {
+            for (int i = 0; i < keysAndValues.length; i += 2) {
+                object.put((String) keysAndValues[i], keysAndValues[i + 1]);
+            }
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return object;
+    }
+}
@@ -0,0 +1,91 @@
+package com.taxitot.loadsim;
+
+import java.util.Random;
+
+/**
+ * Endless drive inside a circle: heads to a random target, picks a new one on
+ * arrival. Speed varies +-30% per leg and fixes get ~5 m of GPS noise, like a
+ * phone in city traffic.
+ */
+final class SyntheticRoute {
+
+    private static final double EARTH_RADIUS_M = 6_371_000;
+    private static final double GPS_NOISE_M = 5;
+
+    private final Random random;
+    private final double centerLat;
+    private final double centerLng;
+    private final double radiusM;
+    private final double baseSpeedMps;
+
+    private double lat;
+    private double lng;
+    private double targetLat;
+    private double targetLng;
+    private double legSpeedMps;
+    private double traveledM;
+
+    SyntheticRoute(Random random, double centerLat, double centerLng, double radiusKm, double speedKmh) {
+        this.random = random;
+        this.centerLat = centerLat;
+        this.centerLng = centerLng;
+        this.radiusM = radiusKm * 1000;
+        this.baseSpeedMps = speedKmh / 3.6;
+        double[] start = randomPoint();
+        lat = start[0];
+        lng = start[1];
+        nextLeg();
+    }
+
+    /** Moves the car forward by elapsedSeconds of driving. */
+    void advance(double elapsedSeconds) {
+        double step = legSpeedMps * elapsedSeconds;
+        double remaining = distanceMeters(lat, lng, targetLat, targetLng);
+        if (step >= remaining) {
+            lat = targetLat;
+            lng = targetLng;
+            nextLeg();
+        } else {
+            double t = step / remaining;
+            lat += (targetLat - lat) * t;
+            lng += (targetLng - lng) * t;
+        }
+        traveledM += step;
+    }
+
+    /** Current position as a GPS fix would report it: {lat, lng}. */
+    double[] fix() {
+        double noiseLat = random.nextGaussian() * GPS_NOISE_M / 111_320.0;
+        double noiseLng = random.nextGaussian() * GPS_NOISE_M / (111_320.0 * Math.cos(Math.toRadians(lat)));
+        return new double[] { lat + noiseLat, lng + noiseLng };
+    }
+
+    double traveledMeters() {
+        return traveledM;
+    }
+
+    private void nextLeg() {
+        double[] target = randomPoint();
+        targetLat = target[0];
+        targetLng = target[1];
+        legSpeedMps = baseSpeedMps * (0.7 + random.nextDouble() * 0.6);
+    }
+
+    private double[] randomPoint() {
+        // Uniform over the disc
+        double distance = radiusM * Math.sqrt(random.nextDouble());
+        double bearing = random.nextDouble() * 2 * Math.PI;
+        double dLat = distance * Math.cos(bearing) / 111_320.0;
+        double dLng = distance * Math.sin(bearing) / (111_320.0 * Math.cos(Math.toRadians(centerLat)));
+        return new double[] { centerLat + dLat, centerLng + dLng };
+    }
+
+    static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,37 @@
+package com.taxitot.loadsim;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LatencyRecorderTest {
+
+    @Test
+    public void nearestRankPercentiles() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int ms = 1; ms <= 1000; ms++) {
+            recorder.record(ms * 1_000_000L);
+        }
+
+        LatencyRecorder.Summary summary = recorder.total();
+
+        assertEquals(1000, summary.count());
+        assertEquals(500, summary.p50Ms(), 0);
+        assertEquals(990, summary.p99Ms(), 0);
+        assertEquals(999, summary.p999Ms(), 0);
+        assertEquals(1000, summary.maxMs(), 0);
+    }
+
+    @Test
+    public void drainedIntervalsStayInTotal() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(5_000_000L);
+        assertEquals(1, recorder.drainInterval().count());
+
+        recorder.record(7_000_000L);
+        assertEquals(1, recorder.drainInterval().count());
+        assertEquals(0, recorder.drainInterval().count());
+        assertEquals(2, recorder.total().count());
+        assertEquals(7, recorder.total().maxMs(), 0);
+    }
+}
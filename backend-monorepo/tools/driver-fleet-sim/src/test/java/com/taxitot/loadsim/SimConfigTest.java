@@ -0,0 +1,67 @@
+package com.taxitot.loadsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class SimConfigTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path seedFile(String content) throws IOException {
+        Path file = folder.newFile("seed.csv").toPath();
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    public void syntheticIdsMeasureLocationOnly() {
+        SimConfig config = SimConfig.parse(new String[] { "--drivers=10" });
+
+        assertNull(config.seeded);
+        assertFalse(config.measuresProgress());
+    }
+
+    @Test
+    public void goOnlineNeedsSeededDrivers() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SimConfig.parse(new String[] { "--go-online=true" }));
+    }
+
+    @Test
+    public void readsSeedFileRows() throws IOException {
+        Path file = seedFile("""
+                # driverId,clientId,tripId
+                d1, c1, t1
+
+                d2
+                """);
+
+        SimConfig config = SimConfig.parse(new String[] { "--drivers=2", "--go-online=true",
+                "--seed-file=" + file });
+
+        assertTrue(config.measuresProgress());
+        assertEquals(new SimConfig.SeededDriver("d1", "c1", "t1"), config.seeded.get(0));
+        assertEquals(new SimConfig.SeededDriver("d2", null, null), config.seeded.get(1));
+    }
+
+    @Test
+    public void rejectsMoreDriversThanSeededRows() throws IOException {
+        Path file = seedFile("d1\n");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SimConfig.parse(new String[] { "--drivers=2", "--seed-file=" + file }));
+    }
+}
@@ -0,0 +1,22 @@
+package com.taxitot.loadsim;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class SyntheticRouteTest {
+
+    @Test
+    public void staysInArea() {
+        SyntheticRoute route = new SyntheticRoute(new Random(1), -8.8390, 13.2890, 8, 30);
+        for (int i = 0; i < 3600; i++) {
+            route.advance(1);
+            double[] fix = route.fix();
+            assertTrue(SyntheticRoute.distanceMeters(-8.8390, 13.2890, fix[0], fix[1]) < 8_100);
+        }
+        // An hour at 30 km/h +-30%
+        assertTrue(route.traveledMeters() > 20_000 && route.traveledMeters() < 40_000);
+    }
+}
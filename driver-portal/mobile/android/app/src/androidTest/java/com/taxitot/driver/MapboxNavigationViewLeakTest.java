@@ -0,0 +1,152 @@
+package com.taxitot.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.os.Debug;
+import android.view.ViewGroup;
+
+import androidx.test.ext.junit.rules.ActivityScenarioRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mount/unmount regression checks for MapboxNavigationView and its pool.
+ * Runs on a device because MapView needs a real GL surface.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MapboxNavigationViewLeakTest {
+
+    private static final int WARMUP_CYCLES = 3;
+    private static final int CYCLES = 30;
+
+    // A pooled view is reused, so steady-state growth should stay near zero;
+    // the margins absorb allocator noise, not a leaked map per cycle
+    private static final long MAX_JAVA_HEAP_GROWTH_BYTES = 4L * 1024 * 1024;
+    private static final long MAX_NATIVE_HEAP_GROWTH_BYTES = 24L * 1024 * 1024;
+
+    @Rule
+    public ActivityScenarioRule<MainActivity> activityRule = new ActivityScenarioRule<>(MainActivity.class);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+
+    @After
+    public void tearDown() {
+        instrumentation.runOnMainSync(MapboxNavigationViewPool::clear);
+    }
+
+    @Test
+    public void remountReusesPooledView() {
+        MapboxNavigationView first = mountAndUnmount();
+        MapboxNavigationView second = mountAndUnmount();
+
+        assertSame(first, second);
+        assertEquals(1, MapboxNavigationViewPool.idleCount());
+    }
+
+    @Test
+    public void repeatedMountUnmountDoesNotGrowHeap() {
+        for (int i = 0; i < WARMUP_CYCLES; i++) {
+            mountAndUnmount();
+        }
+        forceGc();
+        long javaBefore = usedJavaHeap();
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+
+        for (int i = 0; i < CYCLES; i++) {
+            mountAndUnmount();
+        }
+        forceGc();
+        long javaGrowth = usedJavaHeap() - javaBefore;
+        long nativeGrowth = Debug.getNativeHeapAllocatedSize() - nativeBefore;
+
+        assertTrue("Java heap grew by " + javaGrowth + " bytes", javaGrowth < MAX_JAVA_HEAP_GROWTH_BYTES);
+        assertTrue("Native heap grew by " + nativeGrowth + " bytes", nativeGrowth < MAX_NATIVE_HEAP_GROWTH_BYTES);
+    }
+
+    @Test
+    public void viewEvictedFromFullPoolIsCollected() {
+        AtomicReference<MapboxNavigationView> pooled = new AtomicReference<>();
+        AtomicReference<WeakReference<MapboxNavigationView>> evicted = new AtomicReference<>();
+        AtomicBoolean evictedDestroyed = new AtomicBoolean();
+        AtomicBoolean evictedObserving = new AtomicBoolean(true);
+        AtomicBoolean pendingUpdateRan = new AtomicBoolean();
+        withActivity(activity -> {
+            ViewGroup root = activity.findViewById(android.R.id.content);
+            MapboxNavigationView kept = MapboxNavigationViewPool.acquire(activity);
+            MapboxNavigationView extra = MapboxNavigationViewPool.acquire(activity);
+            root.addView(kept);
+            root.addView(extra);
+            pooled.set(kept);
+            evicted.set(new WeakReference<>(extra));
+        });
+        instrumentation.waitForIdleSync();
+        withActivity(activity -> {
+            MapboxNavigationView extra = evicted.get().get();
+            // Queued map update that must not run once the view is destroyed
+            extra.postTraced("test", () -> pendingUpdateRan.set(true));
+
+            // MAX_IDLE_VIEWS = 1: the first release is pooled, the second destroyed
+            MapboxNavigationViewPool.release(pooled.get());
+            MapboxNavigationViewPool.release(extra);
+            evictedDestroyed.set(extra.isDestroyed());
+            evictedObserving.set(extra.hasRegisteredObservers());
+        });
+        instrumentation.waitForIdleSync();
+        forceGc();
+
+        assertEquals(1, MapboxNavigationViewPool.idleCount());
+        assertFalse("Pooled view was destroyed", pooled.get().isDestroyed());
+        assertTrue("Evicted view was not destroyed", evictedDestroyed.get());
+        assertFalse("Evicted view still observes the engine", evictedObserving.get());
+        assertFalse("Update posted before eviction still ran", pendingUpdateRan.get());
+        assertNull("Evicted view is still reachable", evicted.get().get());
+    }
+
+    private MapboxNavigationView mountAndUnmount() {
+        AtomicReference<MapboxNavigationView> mounted = new AtomicReference<>();
+        withActivity(activity -> {
+            MapboxNavigationView view = MapboxNavigationViewPool.acquire(activity);
+            ((ViewGroup) activity.findViewById(android.R.id.content)).addView(view);
+            mounted.set(view);
+        });
+        instrumentation.waitForIdleSync();
+        instrumentation.runOnMainSync(() -> MapboxNavigationViewPool.release(mounted.get()));
+        instrumentation.waitForIdleSync();
+        return mounted.get();
+    }
+
+    private void withActivity(ActivityAction action) {
+        activityRule.getScenario().onActivity(action::run);
+    }
+
+    private static long usedJavaHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void forceGc() {
+        for (int i = 0; i < 3; i++) {
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+        }
+    }
+
+    private interface ActivityAction {
+        void run(Activity activity);
+    }
+}
@@ -0,0 +1,156 @@
+package com.taxitot.driver;
+
+import com.taxitot.driver.NavigationEngine.Waypoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows the driver on the primary route and every alternative: each fix
+ * is projected on each route, which keeps the distance along it and the
+ * offset from it up to date.
+ *
+ * The driver has committed to an alternative once they are within
+ * onRouteMeters of it and at least offPrimaryMeters away from the primary
+ * for commitFixes fixes in a row. Parallel roads closer than that are not
+ * told apart, which leaves them to the regular reroute.
+ *
+ * Pure geometry; not thread-safe.
+ */
+public class AlternativeRouteMatcher {
+
+    public static final double DEFAULT_ON_ROUTE_METERS = 20;
+    public static final double DEFAULT_OFF_PRIMARY_METERS = 40;
+    public static final int DEFAULT_COMMIT_FIXES = 3;
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    // Segments searched around the last match; a full scan only on the first fix
+    private static final int SEARCH_BEHIND = 2;
+    private static final int SEARCH_AHEAD = 40;
+
+    private static final class Track {
+        final List<Waypoint> geometry;
+        final double[] cumulative;
+        int segment = -1;
+        double alongMeters;
+        double offsetMeters = Double.MAX_VALUE;
+
+        Track(List<Waypoint> geometry) {
+            this.geometry = geometry;
+            this.cumulative = new double[Math.max(1, geometry.size())];
+            for (int i = 1; i < geometry.size(); i++) {
+                Waypoint a = geometry.get(i - 1);
+                Waypoint b = geometry.get(i);
+                cumulative[i] = cumulative[i - 1] + TripScorer.haversineMeters(a.lat, a.lng, b.lat, b.lng);
+            }
+        }
+    }
+
+    private final double onRouteMeters;
+    private final double offPrimaryMeters;
+    private final int commitFixes;
+
+    private final List<Track> tracks = new ArrayList<>();
+    private int candidate = -1;
+    private int candidateFixes;
+
+    public AlternativeRouteMatcher() {
+        this(DEFAULT_ON_ROUTE_METERS, DEFAULT_OFF_PRIMARY_METERS, DEFAULT_COMMIT_FIXES);
+    }
+
+    public AlternativeRouteMatcher(double onRouteMeters, double offPrimaryMeters, int commitFixes) {
+        this.onRouteMeters = onRouteMeters;
+        this.offPrimaryMeters = offPrimaryMeters;
+        this.commitFixes = commitFixes;
+    }
+
+    /** @param geometries primary first, then the alternatives */
+    public void setRoutes(List<List<Waypoint>> geometries) {
+        tracks.clear();
+        for (List<Waypoint> geometry : geometries) {
+            tracks.add(new Track(geometry));
+        }
+        candidate = -1;
+        candidateFixes = 0;
+    }
+
+    public int routeCount() {
+        return tracks.size();
+    }
+
+    /** Meters driven along the route, as of the last fix. */
+    public double alongMeters(int index) {
+        return tracks.get(index).alongMeters;
+    }
+
+    /** Distance between the last fix and the route. */
+    public double offsetMeters(int index) {
+        return tracks.get(index).offsetMeters;
+    }
+
+    /** @return index of the alternative the driver committed to, or -1 */
+    public int onFix(Waypoint fix) {
+        for (Track track : tracks) {
+            project(track, fix);
+        }
+        if (tracks.size() < 2 || tracks.get(0).offsetMeters < offPrimaryMeters) {
+            candidate = -1;
+            candidateFixes = 0;
+            return -1;
+        }
+
+        int best = -1;
+        for (int i = 1; i < tracks.size(); i++) {
+            double offset = tracks.get(i).offsetMeters;
+            if (offset <= onRouteMeters && (best < 0 || offset < tracks.get(best).offsetMeters)) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            candidate = -1;
+            candidateFixes = 0;
+            return -1;
+        }
+        candidateFixes = best == candidate ? candidateFixes + 1 : 1;
+        candidate = best;
+        if (candidateFixes < commitFixes)
+            return -1;
+        candidate = -1;
+        candidateFixes = 0;
+        return best;
+    }
+
+    private static void project(Track track, Waypoint fix) {
+        int segments = track.geometry.size() - 1;
+        if (segments < 1)
+            return;
+        int from = track.segment < 0 ? 0 : Math.max(0, track.segment - SEARCH_BEHIND);
+        int to = track.segment < 0 ? segments : Math.min(segments, track.segment + SEARCH_AHEAD);
+
+        double cosLat = Math.cos(Math.toRadians(fix.lat));
+        double bestOffset = Double.MAX_VALUE;
+        int bestSegment = from;
+        double bestT = 0;
+        for (int i = from; i < to; i++) {
+            Waypoint a = track.geometry.get(i);
+            Waypoint b = track.geometry.get(i + 1);
+            // Planar meters relative to a; fine at segment scale
+            double bx = (b.lng - a.lng) * METERS_PER_DEGREE * cosLat;
+            double by = (b.lat - a.lat) * METERS_PER_DEGREE;
+            double px = (fix.lng - a.lng) * METERS_PER_DEGREE * cosLat;
+            double py = (fix.lat - a.lat) * METERS_PER_DEGREE;
+            double lengthSq = bx * bx + by * by;
+            double t = lengthSq > 0 ? Math.max(0, Math.min(1, (px * bx + py * by) / lengthSq)) : 0;
+            double offset = Math.hypot(px - t * bx, py - t * by);
+            if (offset < bestOffset) {
+                bestOffset = offset;
+                bestSegment = i;
+                bestT = t;
+            }
+        }
+        track.segment = bestSegment;
+        track.offsetMeters = bestOffset;
+        double segmentLength = track.cumulative[bestSegment + 1] - track.cumulative[bestSegment];
+        track.alongMeters = track.cumulative[bestSegment] + bestT * segmentLength;
+    }
+}
@@ -0,0 +1,169 @@
+package com.taxitot.driver;
+
+import android.util.Log;
+
+import com.taxitot.driver.NavigationEngine.RouteInfo;
+import com.taxitot.driver.NavigationEngine.Waypoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Switches to an alternative route on device once the driver commits to it
+ * (see AlternativeRouteMatcher): the engine gets the same routes with that
+ * alternative first, so there is no Directions call and no
+ * "recalculating" gap. Runs while a trip session is active.
+ *
+ * The Nav SDK handles the same deviation on its own: once it detects
+ * off-route it first tries the alternatives it holds and only then requests
+ * a new route, reporting both as a reroute. Whichever side acts first wins
+ * and the other sees the result as a routes change:
+ * - this switch sets the routes, so the SDK finds the driver on the primary
+ *   and drops its off-route handling;
+ * - an SDK switch arrives as a reroute whose primary is a route held before.
+ *   It is counted in sdkSwitches and re-tracked, so the matcher (fed the new
+ *   primary) does not switch again.
+ * Only a reroute to a route not held before went to Directions.
+ *
+ * Switch rate = (local + SDK switches) / (local + SDK switches + network reroutes).
+ *
+ * Engine thread only.
+ */
+public class AlternativeRouteSwitcher {
+
+    private static final String TAG = "AltRouteSwitcher";
+
+    public interface Listener {
+        /** Called on the engine thread after a local or SDK switch; routes[0] is the new primary. */
+        void onSwitched(List<RouteInfo> routes);
+    }
+
+    public static final class Stats {
+        public final boolean running;
+        public final int alternatives;
+        public final long localSwitches;
+        /** Reroutes where the SDK promoted an alternative it already held. */
+        public final long sdkSwitches;
+        /** Reroutes that fetched a new route. */
+        public final long networkReroutes;
+
+        Stats(boolean running, int alternatives, long localSwitches, long sdkSwitches, long networkReroutes) {
+            this.running = running;
+            this.alternatives = alternatives;
+            this.localSwitches = localSwitches;
+            this.sdkSwitches = sdkSwitches;
+            this.networkReroutes = networkReroutes;
+        }
+
+        /** Share of route changes made without Directions; 0 until the first one. */
+        public double switchRate() {
+            long switches = localSwitches + sdkSwitches;
+            long total = switches + networkReroutes;
+            return total > 0 ? (double) switches / total : 0;
+        }
+    }
+
+    private final Listener listener;
+    private final AlternativeRouteMatcher matcher = new AlternativeRouteMatcher();
+
+    private NavigationEngine engine;
+    private List<RouteInfo> routes = Collections.emptyList();
+    private long localSwitches;
+    private long sdkSwitches;
+    private long networkReroutes;
+
+    private final NavigationEngine.RoutesListener routesListener = this::onRoutesChanged;
+
+    private final NavigationEngine.LocationListener locationListener = fix -> {
+        if (routes.size() < 2)
+            return;
+        int index = matcher.onFix(new Waypoint(fix.lat, fix.lng));
+        if (index > 0) {
+            switchTo(index);
+        }
+    };
+
+    public AlternativeRouteSwitcher(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Trip session started: follow the engine's routes; resets the counters. */
+    public void start(NavigationEngine engine) {
+        stop();
+        this.engine = engine;
+        localSwitches = 0;
+        sdkSwitches = 0;
+        networkReroutes = 0;
+        engine.registerRoutesListener(routesListener);
+        engine.registerLocationListener(locationListener);
+    }
+
+    public void stop() {
+        if (engine == null)
+            return;
+        engine.unregisterRoutesListener(routesListener);
+        engine.unregisterLocationListener(locationListener);
+        engine = null;
+        routes = Collections.emptyList();
+        matcher.setRoutes(Collections.<List<Waypoint>>emptyList());
+    }
+
+    public Stats snapshot() {
+        return new Stats(engine != null, Math.max(0, routes.size() - 1), localSwitches, sdkSwitches,
+                networkReroutes);
+    }
+
+    /** Whether route was among the routes held before a change (same id). */
+    static boolean isHeld(List<RouteInfo> held, RouteInfo route) {
+        for (RouteInfo candidate : held) {
+            if (candidate.id.equals(route.id))
+                return true;
+        }
+        return false;
+    }
+
+    private void onRoutesChanged(List<RouteInfo> changed, NavigationEngine.RoutesChangeReason reason) {
+        List<RouteInfo> previous = routes;
+        routes = new ArrayList<>(changed);
+        if (reason == NavigationEngine.RoutesChangeReason.REFRESH)
+            return; // same geometry, newer traffic
+        track(changed);
+        if (reason != NavigationEngine.RoutesChangeReason.REROUTE || changed.isEmpty())
+            return;
+        if (isHeld(previous, changed.get(0))) {
+            sdkSwitches++;
+            Log.i(TAG, "SDK switched to held alternative " + changed.get(0).id);
+            listener.onSwitched(routes);
+        } else {
+            networkReroutes++;
+        }
+    }
+
+    private void switchTo(int index) {
+        List<RouteInfo> reordered = new ArrayList<>(routes.size());
+        reordered.add(routes.get(index));
+        for (int i = 0; i < routes.size(); i++) {
+            if (i != index) {
+                reordered.add(routes.get(i));
+            }
+        }
+        localSwitches++;
+        Log.i(TAG, "Driver took alternative " + routes.get(index).id + " after "
+                + Math.round(matcher.alongMeters(index)) + "m, switching locally");
+        // Re-seed now: the engine reports the new routes asynchronously and
+        // fixes in between must not trigger a second switch
+        routes = reordered;
+        track(reordered);
+        engine.setRoutes(reordered);
+        listener.onSwitched(reordered);
+    }
+
+    private void track(List<RouteInfo> current) {
+        List<List<Waypoint>> geometries = new ArrayList<>(current.size());
+        for (RouteInfo route : current) {
+            geometries.add(engine.routeGeometry(route));
+        }
+        matcher.setRoutes(geometries);
+    }
+}
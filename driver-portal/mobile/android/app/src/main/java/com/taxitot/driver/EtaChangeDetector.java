@@ -0,0 +1,79 @@
+package com.taxitot.driver;
+
+/**
+ * Decides when a route refresh moved the ETA enough to tell JS.
+ *
+ * The first progress on a new route sets the baseline arrival time. The
+ * first progress after each refresh is compared with it; a change of at
+ * least max(minDeltaSeconds, minDeltaRatio * remaining) is reported and
+ * becomes the new baseline. Smaller changes keep the old baseline, so
+ * several small refreshes in the same direction still add up.
+ *
+ * Not thread-safe: the module drives it from the engine thread.
+ */
+public class EtaChangeDetector {
+
+    public static final double DEFAULT_MIN_DELTA_SECONDS = 60;
+    public static final double DEFAULT_MIN_DELTA_RATIO = 0.1;
+
+    public static final class Change {
+        public final double previousDurationRemaining;
+        public final double durationRemaining;
+        public final double distanceRemaining;
+
+        Change(double previousDurationRemaining, double durationRemaining, double distanceRemaining) {
+            this.previousDurationRemaining = previousDurationRemaining;
+            this.durationRemaining = durationRemaining;
+            this.distanceRemaining = distanceRemaining;
+        }
+
+        public double deltaSeconds() {
+            return durationRemaining - previousDurationRemaining;
+        }
+    }
+
+    private double minDeltaSeconds = DEFAULT_MIN_DELTA_SECONDS;
+    private double minDeltaRatio = DEFAULT_MIN_DELTA_RATIO;
+
+    private boolean hasBaseline;
+    private long baselineArrivalMs;
+    private boolean refreshPending;
+
+    public void setThresholds(double minDeltaSeconds, double minDeltaRatio) {
+        this.minDeltaSeconds = Math.max(0, minDeltaSeconds);
+        this.minDeltaRatio = Math.max(0, minDeltaRatio);
+    }
+
+    /** New route or leg: the next progress sets a fresh baseline. */
+    public void reset() {
+        hasBaseline = false;
+        refreshPending = false;
+    }
+
+    /** Traffic data was refreshed; the next progress reflects it. */
+    public void onRefresh() {
+        refreshPending = hasBaseline;
+    }
+
+    /** @return the change to report, or null */
+    public Change onProgress(double durationRemaining, double distanceRemaining, long nowMs) {
+        long arrivalMs = nowMs + Math.round(durationRemaining * 1000);
+        if (!hasBaseline) {
+            hasBaseline = true;
+            baselineArrivalMs = arrivalMs;
+            return null;
+        }
+        if (!refreshPending) {
+            return null;
+        }
+        refreshPending = false;
+
+        double previous = Math.max(0, (baselineArrivalMs - nowMs) / 1000.0);
+        double threshold = Math.max(minDeltaSeconds, minDeltaRatio * previous);
+        if (Math.abs(durationRemaining - previous) < threshold) {
+            return null;
+        }
+        baselineArrivalMs = arrivalMs;
+        return new Change(previous, durationRemaining, distanceRemaining);
+    }
+}
@@ -0,0 +1,372 @@
+package com.taxitot.driver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory NavigationEngine with no Android or Mapbox dependencies.
+ *
+ * Routes are straight polylines through the requested coordinates, returned
+ * after a fixed latency; the polyline (List of Waypoint) is the route's
+ * nativeValue. While the trip session runs, the engine emits a
+ * location, and progress along the active route, every tickMs, moving at
+ * speedMps; arrival fires once the route is consumed, and the routes are
+ * re-announced as REFRESH at the route refresh interval. Everything runs on a
+ * single "fake-nav-engine" thread, mirroring the main-looper contract of the
+ * Mapbox engine.
+ *
+ * Used by JVM tests and benchmarks of NavigationSession, and can be swapped in
+ * on device through NavigationEngines.setOverride.
+ */
+public class FakeNavigationEngine implements NavigationEngine {
+
+    private final ScheduledExecutorService engineThread;
+    private volatile Thread engineThreadRef;
+
+    private final double speedMps;
+    private final long tickMs;
+    private final long routeLatencyMs;
+
+    // Confined to the engine thread
+    private final List<RoutesListener> routesListeners = new ArrayList<>();
+    private final List<ProgressListener> progressListeners = new ArrayList<>();
+    private final List<LocationListener> locationListeners = new ArrayList<>();
+    private final List<ArrivalListener> arrivalListeners = new ArrayList<>();
+    private final List<VoiceListener> voiceListeners = new ArrayList<>();
+    private final Map<Long, ScheduledFuture<?>> pendingRequests = new HashMap<>();
+    private long nextRequestId = 1;
+    private List<RouteInfo> activeRoutes = Collections.emptyList();
+    private double traveledMeters;
+    private boolean arrived;
+    private Waypoint position;
+    private ScheduledFuture<?> ticker;
+    private ScheduledFuture<?> refresher;
+    private long refreshIntervalMs;
+    private volatile boolean failRoutes;
+
+    private final AtomicInteger routeRequests = new AtomicInteger();
+    private final AtomicInteger cancelledRequests = new AtomicInteger();
+    private final AtomicInteger progressEvents = new AtomicInteger();
+
+    /**
+     * @param start          initial device position
+     * @param speedMps       simulated driving speed
+     * @param tickMs         location/progress emission interval
+     * @param routeLatencyMs delay before a route request resolves
+     */
+    public FakeNavigationEngine(Waypoint start, double speedMps, long tickMs, long routeLatencyMs) {
+        this.position = start;
+        this.speedMps = speedMps;
+        this.tickMs = tickMs;
+        this.routeLatencyMs = routeLatencyMs;
+        this.engineThread = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fake-nav-engine");
+            thread.setDaemon(true);
+            engineThreadRef = thread;
+            return thread;
+        });
+    }
+
+    /** While set, route requests resolve with onFailure (no Directions response). */
+    public void setFailRouteRequests(boolean fail) {
+        failRoutes = fail;
+    }
+
+    public int routeRequestCount() {
+        return routeRequests.get();
+    }
+
+    public int cancelledRequestCount() {
+        return cancelledRequests.get();
+    }
+
+    public int progressEventCount() {
+        return progressEvents.get();
+    }
+
+    public void shutdown() {
+        engineThread.shutdownNow();
+    }
+
+    @Override
+    public void runOnEngineThread(Runnable action) {
+        if (Thread.currentThread() == engineThreadRef) {
+            action.run();
+        } else if (!engineThread.isShutdown()) {
+            try {
+                engineThread.execute(action);
+            } catch (RejectedExecutionException e) {
+                // Shut down concurrently; a stopped engine drops its work
+            }
+        }
+    }
+
+    @Override
+    public long requestRoutes(List<Waypoint> coordinates, RouteCallback callback) {
+        long requestId = nextRequestId++;
+        routeRequests.incrementAndGet();
+        List<Waypoint> geometry = new ArrayList<>(coordinates);
+        ScheduledFuture<?> future = engineThread.schedule(() -> {
+            if (pendingRequests.remove(requestId) == null) {
+                return;
+            }
+            if (geometry.size() < 2) {
+                callback.onFailure("At least two coordinates are required");
+                return;
+            }
+            if (failRoutes) {
+                callback.onFailure("Simulated route failure");
+                return;
+            }
+            double distance = length(geometry);
+            List<RouteInfo> routes = new ArrayList<>();
+            routes.add(new RouteInfo("fake-" + requestId, distance, distance / speedMps,
+                    Collections.unmodifiableList(geometry)));
+            callback.onRoutesReady(routes);
+        }, routeLatencyMs, TimeUnit.MILLISECONDS);
+        pendingRequests.put(requestId, future);
+        return requestId;
+    }
+
+    @Override
+    public void cancelRouteRequest(long requestId) {
+        ScheduledFuture<?> future = pendingRequests.remove(requestId);
+        if (future != null) {
+            future.cancel(false);
+            cancelledRequests.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void setRoutes(List<RouteInfo> routes) {
+        activeRoutes = new ArrayList<>(routes);
+        traveledMeters = 0;
+        arrived = false;
+        notifyRoutes(activeRoutes.isEmpty() ? RoutesChangeReason.CLEAN_UP : RoutesChangeReason.NEW);
+    }
+
+    /**
+     * Replaces the routes as the SDK's reroute does: reported with
+     * RoutesChangeReason.REROUTE. Promoting a held alternative means passing
+     * routes that are already active.
+     */
+    public void simulateReroute(List<RouteInfo> routes) {
+        runOnEngineThread(() -> {
+            activeRoutes = new ArrayList<>(routes);
+            traveledMeters = 0;
+            notifyRoutes(RoutesChangeReason.REROUTE);
+        });
+    }
+
+    @Override
+    public boolean setRouteRefreshInterval(long intervalMs) {
+        refreshIntervalMs = intervalMs;
+        if (ticker != null) {
+            scheduleRefresh();
+        }
+        return true;
+    }
+
+    /** Fake routes carry no traffic: a refresh re-announces them unchanged. */
+    private void scheduleRefresh() {
+        if (refresher != null) {
+            refresher.cancel(false);
+            refresher = null;
+        }
+        if (refreshIntervalMs > 0) {
+            refresher = engineThread.scheduleAtFixedRate(() -> {
+                if (!activeRoutes.isEmpty()) {
+                    notifyRoutes(RoutesChangeReason.REFRESH);
+                }
+            }, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void notifyRoutes(RoutesChangeReason reason) {
+        for (RoutesListener listener : new ArrayList<>(routesListeners)) {
+            listener.onRoutesChanged(activeRoutes, reason);
+        }
+    }
+
+    @Override
+    public String serializeRoute(RouteInfo route) {
+        // id|distance|duration|lat,lng;lat,lng...
+        StringBuilder out = new StringBuilder()
+                .append(route.id).append('|')
+                .append(route.distanceMeters).append('|')
+                .append(route.durationSeconds).append('|');
+        List<Waypoint> geometry = geometryOf(route);
+        for (int i = 0; i < geometry.size(); i++) {
+            if (i > 0)
+                out.append(';');
+            out.append(geometry.get(i).lat).append(',').append(geometry.get(i).lng);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public RouteInfo deserializeRoute(String serialized) {
+        String[] parts = serialized.split("\\|", -1);
+        if (parts.length != 4)
+            return null;
+        try {
+            List<Waypoint> geometry = new ArrayList<>();
+            for (String point : parts[3].split(";")) {
+                String[] latLng = point.split(",");
+                geometry.add(new Waypoint(Double.parseDouble(latLng[0]), Double.parseDouble(latLng[1])));
+            }
+            return new RouteInfo(parts[0], Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                    Collections.unmodifiableList(geometry));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public List<Waypoint> routeGeometry(RouteInfo route) {
+        return geometryOf(route);
+    }
+
+    @Override
+    public void startTripSession() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = engineThread.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        scheduleRefresh();
+    }
+
+    @Override
+    public void stopTripSession() {
+        if (ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+        if (refresher != null) {
+            refresher.cancel(false);
+            refresher = null;
+        }
+    }
+
+    private void tick() {
+        RouteInfo route = activeRoutes.isEmpty() ? null : activeRoutes.get(0);
+        List<Waypoint> geometry = route != null ? geometryOf(route) : null;
+        if (geometry != null && !geometry.isEmpty() && !arrived) {
+            traveledMeters = Math.min(route.distanceMeters, traveledMeters + speedMps * tickMs / 1000.0);
+            position = pointAlong(geometry, traveledMeters);
+        }
+
+        LocationFix fix = new LocationFix(position.lat, position.lng, speedMps, null);
+        for (LocationListener listener : new ArrayList<>(locationListeners)) {
+            listener.onLocation(fix);
+        }
+        if (geometry == null || geometry.isEmpty() || arrived) {
+            return;
+        }
+
+        double remaining = route.distanceMeters - traveledMeters;
+        ProgressInfo progress = new ProgressInfo(remaining, remaining / speedMps, traveledMeters,
+                remaining, remaining / speedMps, null);
+        progressEvents.incrementAndGet();
+        for (ProgressListener listener : new ArrayList<>(progressListeners)) {
+            listener.onProgress(progress);
+        }
+        if (remaining <= 0) {
+            arrived = true;
+            for (ArrivalListener listener : new ArrayList<>(arrivalListeners)) {
+                listener.onFinalDestinationArrival();
+            }
+        }
+    }
+
+    @Override
+    public void registerRoutesListener(RoutesListener listener) {
+        routesListeners.add(listener);
+        // Replay current routes like the Mapbox SDK does
+        listener.onRoutesChanged(activeRoutes,
+                activeRoutes.isEmpty() ? RoutesChangeReason.CLEAN_UP : RoutesChangeReason.NEW);
+    }
+
+    @Override
+    public void unregisterRoutesListener(RoutesListener listener) {
+        routesListeners.remove(listener);
+    }
+
+    @Override
+    public void registerProgressListener(ProgressListener listener) {
+        progressListeners.add(listener);
+    }
+
+    @Override
+    public void unregisterProgressListener(ProgressListener listener) {
+        progressListeners.remove(listener);
+    }
+
+    @Override
+    public void registerLocationListener(LocationListener listener) {
+        locationListeners.add(listener);
+    }
+
+    @Override
+    public void unregisterLocationListener(LocationListener listener) {
+        locationListeners.remove(listener);
+    }
+
+    @Override
+    public void registerArrivalListener(ArrivalListener listener) {
+        arrivalListeners.add(listener);
+    }
+
+    @Override
+    public void unregisterArrivalListener(ArrivalListener listener) {
+        arrivalListeners.remove(listener);
+    }
+
+    @Override
+    public void registerVoiceListener(VoiceListener listener) {
+        voiceListeners.add(listener);
+    }
+
+    @Override
+    public void unregisterVoiceListener(VoiceListener listener) {
+        voiceListeners.remove(listener);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Waypoint> geometryOf(RouteInfo route) {
+        return route.nativeValue instanceof List ? (List<Waypoint>) route.nativeValue : Collections.emptyList();
+    }
+
+    private static double length(List<Waypoint> geometry) {
+        double total = 0;
+        for (int i = 1; i < geometry.size(); i++) {
+            total += TripScorer.haversineMeters(geometry.get(i - 1).lat, geometry.get(i - 1).lng,
+                    geometry.get(i).lat, geometry.get(i).lng);
+        }
+        return total;
+    }
+
+    private static Waypoint pointAlong(List<Waypoint> geometry, double meters) {
+        double remaining = meters;
+        for (int i = 1; i < geometry.size(); i++) {
+            Waypoint a = geometry.get(i - 1);
+            Waypoint b = geometry.get(i);
+            double segment = TripScorer.haversineMeters(a.lat, a.lng, b.lat, b.lng);
+            if (remaining <= segment && segment > 0) {
+                double t = remaining / segment;
+                return new Waypoint(a.lat + (b.lat - a.lat) * t, a.lng + (b.lng - a.lng) * t);
+            }
+            remaining -= segment;
+        }
+        return geometry.get(geometry.size() - 1);
+    }
+}
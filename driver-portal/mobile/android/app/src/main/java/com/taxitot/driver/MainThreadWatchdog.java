@@ -0,0 +1,274 @@
+package com.taxitot.driver;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Detects main-looper stalls while a trip session is running.
+ *
+ * A "main-watchdog" thread posts a probe to the main looper every
+ * PROBE_INTERVAL_MS and times how long it waits to be dispatched. While a
+ * probe is overdue past the threshold, the main thread's stack is sampled;
+ * once it runs, a StallRecord with the dispatch latency, the samples and the
+ * navigation callback that was executing goes into a bounded ring buffer
+ * (see snapshot()).
+ *
+ * Navigation callbacks that run on the main thread label themselves with
+ * enter()/exit() so a stall can be tied to e.g. "view.location" even when
+ * the stack sits in SDK code.
+ */
+public class MainThreadWatchdog {
+
+    private static final String TAG = "MainWatchdog";
+
+    static final long PROBE_INTERVAL_MS = 250;
+    // ~6 frames at 60 FPS; anything above is visible as a hitch
+    static final long DEFAULT_THRESHOLD_MS = 100;
+    private static final long SAMPLE_INTERVAL_MS = 50;
+    private static final int MAX_SAMPLES_PER_STALL = 5;
+    private static final int MAX_FRAMES = 16;
+    // Frames of the app's own code, kept in samples and used for appFrame
+    private static final String APP_PACKAGE = "com.taxitot";
+    static final int MAX_RECORDS = 50;
+
+    // Label of the navigation callback currently running on the main thread
+    private static volatile String currentCallback;
+
+    public static final class StallRecord {
+        /** Wall clock time the stalled probe was posted. */
+        public final long startedAtMs;
+        public final long durationMs;
+        /** Label passed to enter() when the first sample was taken, or null. */
+        public final String callback;
+        /** Topmost APP_PACKAGE frame in the first sample, or null. */
+        public final String appFrame;
+        /**
+         * Stack samples taken while the probe was overdue, first one first.
+         * Each has the executing frame followed by the APP_PACKAGE frames.
+         */
+        public final List<List<String>> samples;
+
+        StallRecord(long startedAtMs, long durationMs, String callback, String appFrame,
+                List<List<String>> samples) {
+            this.startedAtMs = startedAtMs;
+            this.durationMs = durationMs;
+            this.callback = callback;
+            this.appFrame = appFrame;
+            this.samples = samples;
+        }
+    }
+
+    public static final class Stats {
+        public final boolean running;
+        public final long thresholdMs;
+        public final long probes;
+        public final long stalls;
+        public final long maxLatencyMs;
+        public final List<StallRecord> records;
+
+        Stats(boolean running, long thresholdMs, long probes, long stalls, long maxLatencyMs,
+                List<StallRecord> records) {
+            this.running = running;
+            this.thresholdMs = thresholdMs;
+            this.probes = probes;
+            this.stalls = stalls;
+            this.maxLatencyMs = maxLatencyMs;
+            this.records = records;
+        }
+    }
+
+    /**
+     * Marks the start of a navigation callback on the main thread.
+     *
+     * @return the previous label, to hand back to exit()
+     */
+    public static String enter(String callback) {
+        String previous = currentCallback;
+        currentCallback = callback;
+        return previous;
+    }
+
+    public static void exit(String previous) {
+        currentCallback = previous;
+    }
+
+    private final long thresholdMs;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Thread mainThread = Looper.getMainLooper().getThread();
+
+    private volatile HandlerThread thread;
+    private volatile Handler handler;
+
+    // Confined to the watchdog thread
+    private long probeSeq;
+    private long pendingProbe = -1;
+    private long pendingPostedAt;
+    private long pendingPostedAtWall;
+    private String pendingCallback;
+    private List<List<String>> pendingSamples = new ArrayList<>();
+
+    // Guarded by records
+    private final ArrayDeque<StallRecord> records = new ArrayDeque<>();
+    private long probes;
+    private long stalls;
+    private long maxLatencyMs;
+
+    public MainThreadWatchdog() {
+        this(DEFAULT_THRESHOLD_MS);
+    }
+
+    public MainThreadWatchdog(long thresholdMs) {
+        this.thresholdMs = thresholdMs;
+    }
+
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        thread = new HandlerThread("main-watchdog");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(() -> {
+            // A probe left over from a previous run never gets acknowledged
+            pendingProbe = -1;
+            tick();
+        });
+        Log.i(TAG, "Started, threshold " + thresholdMs + "ms");
+    }
+
+    public synchronized void stop() {
+        if (thread == null)
+            return;
+        // Probes still queued on the main looper would otherwise run after stop
+        mainHandler.removeCallbacksAndMessages(null);
+        handler.removeCallbacksAndMessages(null);
+        thread.quit();
+        thread = null;
+        handler = null;
+        Log.i(TAG, "Stopped");
+    }
+
+    public synchronized boolean isRunning() {
+        return thread != null;
+    }
+
+    public Stats snapshot() {
+        boolean running = isRunning();
+        synchronized (records) {
+            return new Stats(running, thresholdMs, probes, stalls, maxLatencyMs,
+                    new ArrayList<>(records));
+        }
+    }
+
+    public void clear() {
+        synchronized (records) {
+            records.clear();
+            probes = 0;
+            stalls = 0;
+            maxLatencyMs = 0;
+        }
+    }
+
+    private void tick() {
+        Handler self = handler;
+        if (self == null || Looper.myLooper() != self.getLooper())
+            return;
+
+        long now = SystemClock.uptimeMillis();
+        if (pendingProbe < 0) {
+            postProbe(self, now);
+            self.postDelayed(this::tick, Math.min(thresholdMs, PROBE_INTERVAL_MS));
+            return;
+        }
+
+        // Probe still queued: the main thread is busy
+        if (now - pendingPostedAt >= thresholdMs && pendingSamples.size() < MAX_SAMPLES_PER_STALL) {
+            if (pendingSamples.isEmpty()) {
+                pendingCallback = currentCallback;
+            }
+            pendingSamples.add(sampleMainStack());
+        }
+        self.postDelayed(this::tick, SAMPLE_INTERVAL_MS);
+    }
+
+    private void postProbe(Handler self, long now) {
+        long seq = ++probeSeq;
+        pendingProbe = seq;
+        pendingPostedAt = now;
+        pendingPostedAtWall = System.currentTimeMillis();
+        pendingCallback = null;
+        pendingSamples = new ArrayList<>();
+        mainHandler.post(() -> {
+            long latency = SystemClock.uptimeMillis() - now;
+            self.post(() -> onProbeDispatched(seq, latency));
+        });
+    }
+
+    private void onProbeDispatched(long seq, long latencyMs) {
+        if (seq != pendingProbe)
+            return;
+        pendingProbe = -1;
+
+        StallRecord record = null;
+        if (latencyMs >= thresholdMs) {
+            List<List<String>> samples = pendingSamples;
+            record = new StallRecord(pendingPostedAtWall, latencyMs, pendingCallback,
+                    samples.isEmpty() ? null : firstAppFrame(samples.get(0)),
+                    Collections.unmodifiableList(samples));
+        }
+
+        synchronized (records) {
+            probes++;
+            maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+            if (record != null) {
+                stalls++;
+                if (records.size() == MAX_RECORDS) {
+                    records.removeFirst();
+                }
+                records.addLast(record);
+            }
+        }
+        if (record != null) {
+            Log.w(TAG, "Main thread stalled " + latencyMs + "ms in " + record.callback + " at " + record.appFrame);
+        }
+
+        // Next probe after the normal interval, not right away
+        Handler self = handler;
+        if (self != null) {
+            self.removeCallbacksAndMessages(null);
+            self.postDelayed(this::tick, PROBE_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * The executing frame plus up to MAX_FRAMES - 1 app frames, innermost
+     * first. A stall inside SDK or framework code easily fills the top of the
+     * stack, so a plain top-N cut would drop the app code that called it.
+     */
+    private List<String> sampleMainStack() {
+        StackTraceElement[] stack = mainThread.getStackTrace();
+        List<String> frames = new ArrayList<>(MAX_FRAMES);
+        for (int i = 0; i < stack.length && frames.size() < MAX_FRAMES; i++) {
+            if (i == 0 || stack[i].getClassName().startsWith(APP_PACKAGE)) {
+                frames.add(stack[i].toString());
+            }
+        }
+        return Collections.unmodifiableList(frames);
+    }
+
+    private static String firstAppFrame(List<String> frames) {
+        for (String frame : frames) {
+            if (frame.startsWith(APP_PACKAGE)) {
+                return frame;
+            }
+        }
+        return null;
+    }
+}
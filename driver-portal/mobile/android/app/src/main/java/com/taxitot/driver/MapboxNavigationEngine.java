@@ -0,0 +1,352 @@
+package com.taxitot.driver;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.mapbox.api.directions.v5.DirectionsCriteria;
+import com.mapbox.bindgen.Expected;
+import com.mapbox.api.directions.v5.models.RouteOptions;
+import com.mapbox.common.location.Location;
+import com.mapbox.core.constants.Constants;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.Point;
+import com.mapbox.navigation.base.route.NavigationRoute;
+import com.mapbox.navigation.base.route.NavigationRouterCallback;
+import com.mapbox.navigation.base.route.RouterFailure;
+import com.mapbox.navigation.base.trip.model.RouteLegProgress;
+import com.mapbox.navigation.base.trip.model.RouteProgress;
+import com.mapbox.navigation.base.trip.model.RouteStepProgress;
+import com.mapbox.navigation.core.MapboxNavigation;
+import com.mapbox.navigation.core.arrival.ArrivalObserver;
+import com.mapbox.navigation.core.directions.session.RoutesExtra;
+import com.mapbox.navigation.core.directions.session.RoutesObserver;
+import com.mapbox.navigation.core.trip.session.LocationMatcherResult;
+import com.mapbox.navigation.core.trip.session.LocationObserver;
+import com.mapbox.navigation.core.trip.session.RouteProgressObserver;
+import com.mapbox.navigation.core.trip.session.VoiceInstructionsObserver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NavigationEngine backed by the shared MapboxNavigation instance
+ * (NavigationManager). The engine thread is the main looper.
+ */
+public class MapboxNavigationEngine implements NavigationEngine {
+
+    private static MapboxNavigationEngine instance;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Map<RoutesListener, RoutesObserver> routesObservers = new IdentityHashMap<>();
+    private final Map<ProgressListener, RouteProgressObserver> progressObservers = new IdentityHashMap<>();
+    private final Map<LocationListener, LocationObserver> locationObservers = new IdentityHashMap<>();
+    private final Map<ArrivalListener, ArrivalObserver> arrivalObservers = new IdentityHashMap<>();
+    private final Map<VoiceListener, VoiceInstructionsObserver> voiceObservers = new IdentityHashMap<>();
+
+    public static synchronized MapboxNavigationEngine get(Context context) {
+        if (instance == null) {
+            instance = new MapboxNavigationEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MapboxNavigationEngine(Context context) {
+        this.context = context;
+    }
+
+    /** Raw SDK access for Mapbox-only features (maneuvers, rendering). */
+    public MapboxNavigation navigation() {
+        return NavigationManager.get(context);
+    }
+
+    @Override
+    public void runOnEngineThread(Runnable action) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            action.run();
+        } else {
+            // Session work hopping onto the main thread (setRoutes, session
+            // start/stop) shows up as "engine" in stall records
+            mainHandler.post(() -> traced("engine", action));
+        }
+    }
+
+    @Override
+    public long requestRoutes(List<Waypoint> coordinates, RouteCallback callback) {
+        List<Point> points = new ArrayList<>(coordinates.size());
+        for (Waypoint waypoint : coordinates) {
+            points.add(Point.fromLngLat(waypoint.lng, waypoint.lat));
+        }
+        RouteOptions options = RouteOptions.builder()
+                .coordinatesList(points)
+                .steps(true)
+                .voiceInstructions(true)
+                .bannerInstructions(true)
+                .language("pt")
+                // Traffic-aware profile with annotations: required for the
+                // in-place refresh of durations and congestion
+                .profile(DirectionsCriteria.PROFILE_DRIVING_TRAFFIC)
+                .overview(DirectionsCriteria.OVERVIEW_FULL)
+                .annotationsList(Arrays.asList(
+                        DirectionsCriteria.ANNOTATION_CONGESTION_NUMERIC,
+                        DirectionsCriteria.ANNOTATION_DURATION,
+                        DirectionsCriteria.ANNOTATION_DISTANCE,
+                        DirectionsCriteria.ANNOTATION_SPEED))
+                .enableRefresh(true)
+                // Kept on the engine so AlternativeRouteSwitcher can switch
+                // without a new request
+                .alternatives(true)
+                .build();
+
+        return navigation().requestRoutes(options, new NavigationRouterCallback() {
+            @Override
+            public void onRoutesReady(@NonNull List<NavigationRoute> routes, @NonNull String routerOrigin) {
+                callback.onRoutesReady(toRouteInfos(routes));
+            }
+
+            @Override
+            public void onFailure(@NonNull List<RouterFailure> reasons, @NonNull RouteOptions routeOptions) {
+                callback.onFailure(reasons.isEmpty() ? "Unknown error" : reasons.get(0).getMessage());
+            }
+
+            @Override
+            public void onCanceled(@NonNull RouteOptions routeOptions, @NonNull String routerOrigin) {
+            }
+        });
+    }
+
+    @Override
+    public void cancelRouteRequest(long requestId) {
+        navigation().cancelRouteRequest(requestId);
+    }
+
+    @Override
+    public void setRoutes(List<RouteInfo> routes) {
+        List<NavigationRoute> navigationRoutes = new ArrayList<>(routes.size());
+        for (RouteInfo route : routes) {
+            navigationRoutes.add((NavigationRoute) route.nativeValue);
+        }
+        navigation().setNavigationRoutes(navigationRoutes);
+    }
+
+    @Override
+    public boolean setRouteRefreshInterval(long intervalMs) {
+        return NavigationManager.setRouteRefreshInterval(context, intervalMs);
+    }
+
+    @Override
+    public String serializeRoute(RouteInfo route) {
+        if (!(route.nativeValue instanceof NavigationRoute))
+            return null;
+        return ((NavigationRoute) route.nativeValue).serialize();
+    }
+
+    @Override
+    public RouteInfo deserializeRoute(String serialized) {
+        // Rebuilds the route from its own JSON, no Directions request
+        Expected<Throwable, NavigationRoute> result = NavigationRoute.Companion.deserializeFrom(serialized);
+        if (!result.isValue())
+            return null;
+        NavigationRoute route = result.getValue();
+        return new RouteInfo(route.getId(), route.getDirectionsRoute().distance(),
+                route.getDirectionsRoute().duration(), route);
+    }
+
+    @Override
+    public List<Waypoint> routeGeometry(RouteInfo route) {
+        if (!(route.nativeValue instanceof NavigationRoute))
+            return Collections.emptyList();
+        String polyline = ((NavigationRoute) route.nativeValue).getDirectionsRoute().geometry();
+        if (polyline == null)
+            return Collections.emptyList();
+        List<Point> points = LineString.fromPolyline(polyline, Constants.PRECISION_6).coordinates();
+        List<Waypoint> geometry = new ArrayList<>(points.size());
+        for (Point point : points) {
+            geometry.add(new Waypoint(point.latitude(), point.longitude()));
+        }
+        return geometry;
+    }
+
+    @Override
+    public void startTripSession() {
+        navigation().startTripSession();
+    }
+
+    @Override
+    public void stopTripSession() {
+        navigation().stopTripSession();
+    }
+
+    @Override
+    public void registerRoutesListener(RoutesListener listener) {
+        String label = traceLabel("routes", listener);
+        RoutesObserver observer = result -> traced(label,
+                () -> listener.onRoutesChanged(toRouteInfos(result.getNavigationRoutes()),
+                        toReason(result.getReason())));
+        routesObservers.put(listener, observer);
+        navigation().registerRoutesObserver(observer);
+    }
+
+    @Override
+    public void unregisterRoutesListener(RoutesListener listener) {
+        RoutesObserver observer = routesObservers.remove(listener);
+        if (observer != null) {
+            navigation().unregisterRoutesObserver(observer);
+        }
+    }
+
+    @Override
+    public void registerProgressListener(ProgressListener listener) {
+        String label = traceLabel("progress", listener);
+        RouteProgressObserver observer = progress -> traced(label,
+                () -> listener.onProgress(toProgressInfo(progress)));
+        progressObservers.put(listener, observer);
+        navigation().registerRouteProgressObserver(observer);
+    }
+
+    @Override
+    public void unregisterProgressListener(ProgressListener listener) {
+        RouteProgressObserver observer = progressObservers.remove(listener);
+        if (observer != null) {
+            navigation().unregisterRouteProgressObserver(observer);
+        }
+    }
+
+    @Override
+    public void registerLocationListener(LocationListener listener) {
+        String label = traceLabel("location", listener);
+        LocationObserver observer = new LocationObserver() {
+            @Override
+            public void onNewRawLocation(@NonNull Location location) {
+            }
+
+            @Override
+            public void onNewLocationMatcherResult(@NonNull LocationMatcherResult result) {
+                Location location = result.getEnhancedLocation();
+                traced(label, () -> listener.onLocation(new LocationFix(location.getLatitude(),
+                        location.getLongitude(), location.getSpeed(), result)));
+            }
+        };
+        locationObservers.put(listener, observer);
+        navigation().registerLocationObserver(observer);
+    }
+
+    @Override
+    public void unregisterLocationListener(LocationListener listener) {
+        LocationObserver observer = locationObservers.remove(listener);
+        if (observer != null) {
+            navigation().unregisterLocationObserver(observer);
+        }
+    }
+
+    @Override
+    public void registerArrivalListener(ArrivalListener listener) {
+        String label = traceLabel("arrival", listener);
+        ArrivalObserver observer = new ArrivalObserver() {
+            @Override
+            public void onNextRouteLegStart(@NonNull RouteLegProgress routeLegProgress) {
+            }
+
+            @Override
+            public void onFinalDestinationArrival(@NonNull RouteProgress routeProgress) {
+                traced(label, listener::onFinalDestinationArrival);
+            }
+
+            @Override
+            public void onWaypointArrival(@NonNull RouteProgress routeProgress) {
+                traced(label, listener::onWaypointArrival);
+            }
+        };
+        arrivalObservers.put(listener, observer);
+        navigation().registerArrivalObserver(observer);
+    }
+
+    @Override
+    public void unregisterArrivalListener(ArrivalListener listener) {
+        ArrivalObserver observer = arrivalObservers.remove(listener);
+        if (observer != null) {
+            navigation().unregisterArrivalObserver(observer);
+        }
+    }
+
+    @Override
+    public void registerVoiceListener(VoiceListener listener) {
+        String label = traceLabel("voice", listener);
+        VoiceInstructionsObserver observer = voiceInstructions -> traced(label,
+                () -> listener.onVoiceInstruction(voiceInstructions.announcement(), voiceInstructions));
+        voiceObservers.put(listener, observer);
+        navigation().registerVoiceInstructionsObserver(observer);
+    }
+
+    @Override
+    public void unregisterVoiceListener(VoiceListener listener) {
+        VoiceInstructionsObserver observer = voiceObservers.remove(listener);
+        if (observer != null) {
+            navigation().unregisterVoiceInstructionsObserver(observer);
+        }
+    }
+
+    /**
+     * Labels SDK callbacks for MainThreadWatchdog, e.g. "location/MapboxNavigationView".
+     */
+    private static String traceLabel(String event, Object listener) {
+        String name = listener.getClass().getName();
+        name = name.substring(name.lastIndexOf('.') + 1);
+        int inner = name.indexOf('$');
+        return event + "/" + (inner > 0 ? name.substring(0, inner) : name);
+    }
+
+    private static void traced(String label, Runnable callback) {
+        String previous = MainThreadWatchdog.enter(label);
+        try {
+            callback.run();
+        } finally {
+            MainThreadWatchdog.exit(previous);
+        }
+    }
+
+    private static List<RouteInfo> toRouteInfos(List<NavigationRoute> routes) {
+        List<RouteInfo> infos = new ArrayList<>(routes.size());
+        for (NavigationRoute route : routes) {
+            infos.add(new RouteInfo(route.getId(), route.getDirectionsRoute().distance(),
+                    route.getDirectionsRoute().duration(), route));
+        }
+        return infos;
+    }
+
+    private static RoutesChangeReason toReason(String reason) {
+        switch (reason) {
+            case RoutesExtra.ROUTES_UPDATE_REASON_REFRESH:
+                return RoutesChangeReason.REFRESH;
+            case RoutesExtra.ROUTES_UPDATE_REASON_REROUTE:
+                return RoutesChangeReason.REROUTE;
+            case RoutesExtra.ROUTES_UPDATE_REASON_ALTERNATIVE:
+                return RoutesChangeReason.ALTERNATIVE;
+            case RoutesExtra.ROUTES_UPDATE_REASON_CLEAN_UP:
+                return RoutesChangeReason.CLEAN_UP;
+            default:
+                return RoutesChangeReason.NEW;
+        }
+    }
+
+    private static ProgressInfo toProgressInfo(RouteProgress progress) {
+        double stepDistance = 0;
+        double stepDuration = 0;
+        RouteLegProgress leg = progress.getCurrentLegProgress();
+        RouteStepProgress step = leg != null ? leg.getCurrentStepProgress() : null;
+        if (step != null) {
+            stepDistance = step.getDistanceRemaining();
+            stepDuration = step.getDurationRemaining();
+        }
+        return new ProgressInfo(progress.getDistanceRemaining(), progress.getDurationRemaining(),
+                progress.getDistanceTraveled(), stepDistance, stepDuration, progress);
+    }
+}
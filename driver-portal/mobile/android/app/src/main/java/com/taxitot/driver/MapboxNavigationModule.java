@@ -1,6 +1,11 @@
 package com.taxitot.driver;
 
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.location.LocationManager;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
@@ -8,29 +13,14 @@ import androidx.core.content.ContextCompat;
 import com.facebook.react.bridge.*;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
-import com.mapbox.common.location.Location;
 import android.os.Build;
+import android.os.SystemClock;
 
-import com.mapbox.api.directions.v5.DirectionsCriteria;
-import com.mapbox.api.directions.v5.models.RouteOptions;
 import com.mapbox.bindgen.Expected;
 
-import com.mapbox.geojson.Point;
-
-import com.mapbox.navigation.base.route.NavigationRoute;
-import com.mapbox.navigation.base.route.NavigationRouterCallback;
-import com.mapbox.navigation.base.route.RouterFailure;
-import com.mapbox.navigation.base.route.RouterOrigin;
-import com.mapbox.navigation.base.trip.model.RouteLegProgress;
+import com.mapbox.api.directions.v5.models.VoiceInstructions;
 import com.mapbox.navigation.base.trip.model.RouteProgress;
 
-import com.mapbox.navigation.core.MapboxNavigation;
-import com.mapbox.navigation.core.arrival.ArrivalObserver;
-import com.mapbox.navigation.core.trip.session.LocationObserver;
-import com.mapbox.navigation.core.trip.session.LocationMatcherResult;
-import com.mapbox.navigation.core.trip.session.RouteProgressObserver;
-import com.mapbox.navigation.core.trip.session.VoiceInstructionsObserver;
-
 import com.mapbox.navigation.tripdata.maneuver.api.MapboxManeuverApi;
 import com.mapbox.navigation.tripdata.maneuver.model.Maneuver;
 import com.mapbox.navigation.tripdata.maneuver.model.ManeuverError;
@@ -48,7 +38,6 @@ import com.mapbox.navigation.voice.model.SpeechVolume;
 import com.mapbox.navigation.voice.options.MapboxSpeechApiOptions;
 import com.mapbox.navigation.voice.options.VoiceInstructionsPlayerOptions;
 import com.mapbox.navigation.ui.base.util.MapboxNavigationConsumer;
-import com.mapbox.navigation.core.directions.session.RoutesObserver;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -57,14 +46,30 @@ import java.util.Locale;
 public class MapboxNavigationModule extends ReactContextBaseJavaModule {
 
     private static final String TAG = "MapboxNavModule";
+    // How long a recovered session waits for JS to start the same trip and
+    // phase (restore_ride or persisted state) before it is torn down
+    static final long RECOVERY_CONFIRM_MS = 90_000;
     private final ReactApplicationContext context;
-    private boolean isMuted = false;
-    private boolean isTripSessionActive = false;
+    private volatile boolean isMuted = false;
+
+    // Owns trip session lifecycle, route requests and their cancellation
+    private final NavigationEngine engine;
+    private final NavigationSession session;
+    private final TripScorer tripScorer;
+    // Active leg persisted for NavigationRecovery after process death
+    private final NavigationSnapshotStore snapshots = NavigationSnapshotStore.get(getReactApplicationContext());
+    // Runs while a trip session is active
+    private final MainThreadWatchdog stallWatchdog = new MainThreadWatchdog();
+    // Route refresh -> onEtaChanged; engine thread only
+    private final EtaChangeDetector etaDetector = new EtaChangeDetector();
+    // Prefetches tiles along the route while a trip session is active
+    private final PredictiveTileCache tileCache;
+    // Switches to an alternative the driver took, without a reroute request
+    private final AlternativeRouteSwitcher routeSwitcher;
 
     private MapboxManeuverApi maneuverApi;
     private MapboxSpeechApi speechApi;
     private MapboxVoiceInstructionsPlayer voicePlayer;
-    private LocationObserver uberLocationObserver;
 
     public MapboxNavigationModule(ReactApplicationContext reactContext) {
         super(reactContext);
@@ -87,6 +92,23 @@ public class MapboxNavigationModule extends ReactContextBaseJavaModule {
         VoiceInstructionsPlayerOptions voiceOptions = new VoiceInstructionsPlayerOptions.Builder()
                 .build();
         voicePlayer = new MapboxVoiceInstructionsPlayer(context, languageTag, voiceOptions);
+
+        engine = NavigationEngines.get(context);
+        session = new NavigationSession(engine, sessionListener);
+        tripScorer = new TripScorer(accessToken());
+        tileCache = PredictiveTileCache.get();
+        routeSwitcher = new AlternativeRouteSwitcher(this::onRouteSwitched);
+
+        // Process was killed mid-trip: take over the session restored from
+        // disk (by the sticky service restart, or right now)
+        NavigationRecovery.get(context).claim(result -> {
+            if (result == null)
+                return;
+            Log.e(TAG, "♻️ Retomando viagem " + result.snapshot.key + " em " + result.recoveryMs + "ms");
+            session.adopt(result.snapshot.key, result.snapshot.destination, RECOVERY_CONFIRM_MS);
+            startNavigationService();
+            sendEvent("onNavigationRecovered", recoveryToMap(result));
+        });
     }
 
     @NonNull
@@ -95,12 +117,34 @@ public class MapboxNavigationModule extends ReactContextBaseJavaModule {
         return "MapboxNavigationModule";
     }
 
-    private final RouteProgressObserver routeProgressObserver = progress -> {
-        if (maneuverApi == null)
-            return;
-        Expected<ManeuverError, List<Maneuver>> result = maneuverApi.getManeuvers(progress);
-        if (result.isValue()) {
-            sendNavigationProgress(progress, result.getValue());
+    private final NavigationEngine.ProgressListener progressListener = progress -> {
+        // Maneuver text needs the Mapbox RouteProgress; engines without it
+        // (FakeNavigationEngine) still report distances and durations
+        List<Maneuver> maneuvers = null;
+        if (maneuverApi != null && progress.nativeValue instanceof RouteProgress) {
+            Expected<ManeuverError, List<Maneuver>> result = maneuverApi
+                    .getManeuvers((RouteProgress) progress.nativeValue);
+            if (!result.isValue())
+                return;
+            maneuvers = result.getValue();
+        }
+        sendNavigationProgress(progress, maneuvers);
+        snapshots.saveProgress(progress);
+
+        EtaChangeDetector.Change change = etaDetector.onProgress(progress.durationRemaining,
+                progress.distanceRemaining, SystemClock.elapsedRealtime());
+        if (change != null) {
+            sendEtaChanged(change);
+        }
+    };
+
+    // Refresh updates durations and congestion of the active route in place;
+    // anything else is a new route with its own ETA
+    private final NavigationEngine.RoutesListener routesListener = (routes, reason) -> {
+        if (reason == NavigationEngine.RoutesChangeReason.REFRESH) {
+            etaDetector.onRefresh();
+        } else {
+            etaDetector.reset();
         }
     };
 
@@ -122,19 +166,15 @@ public class MapboxNavigationModule extends ReactContextBaseJavaModule {
         }
     };
 
-    private final VoiceInstructionsObserver voiceObserver = voiceInstructions -> {
-        if (speechApi != null && !isMuted) {
-            speechApi.generate(voiceInstructions, speechCallback);
+    private final NavigationEngine.VoiceListener voiceListener = (announcement, nativeValue) -> {
+        if (speechApi != null && !isMuted && nativeValue instanceof VoiceInstructions) {
+            speechApi.generate((VoiceInstructions) nativeValue, speechCallback);
         }
     };
 
-    private final ArrivalObserver arrivalObserver = new ArrivalObserver() {
+    private final NavigationEngine.ArrivalListener arrivalListener = new NavigationEngine.ArrivalListener() {
         @Override
-        public void onNextRouteLegStart(@NonNull RouteLegProgress routeLegProgress) {
-        }
-
-        @Override
-        public void onFinalDestinationArrival(@NonNull RouteProgress routeProgress) {
+        public void onFinalDestinationArrival() {
             WritableMap map = Arguments.createMap();
             map.putBoolean("arrived", true);
             map.putBoolean("finalDestination", true);
@@ -142,7 +182,7 @@ public class MapboxNavigationModule extends ReactContextBaseJavaModule {
         }
 
         @Override
-        public void onWaypointArrival(@NonNull RouteProgress routeProgress) {
+        public void onWaypointArrival() {
             WritableMap map = Arguments.createMap();
             map.putBoolean("arrived", true);
             map.putBoolean("waypoint", true);
@@ -150,54 +190,279 @@ public class MapboxNavigationModule extends ReactContextBaseJavaModule {
         }
     };
 
-    @ReactMethod
-    public void startNavigation(ReadableMap destination) {
-        if (isTripSessionActive)
-            stopNavigation();
-        MapboxNavigation nav = NavigationManager.get(context);
+    private final NavigationSession.Listener sessionListener = new NavigationSession.Listener() {
+        @Override
+        public void onStateChanged(NavigationSessionState from, NavigationSessionState to,
+                long elapsedInPreviousMs) {
+            WritableMap map = Arguments.createMap();
+            map.putString("state", to.jsName());
+            map.putString("previousState", from.jsName());
+            map.putDouble("elapsedMs", elapsedInPreviousMs);
+            sendEvent("onNavigationStateChanged", map);
 
-        // ❌ REMOVED: Voice components now initialized in constructor
+            if (to == NavigationSessionState.IDLE || to == NavigationSessionState.ARRIVED) {
+                snapshots.clear();
+            }
+        }
 
-        nav.unregisterRouteProgressObserver(routeProgressObserver);
-        nav.unregisterVoiceInstructionsObserver(voiceObserver);
-        nav.unregisterArrivalObserver(arrivalObserver);
+        @Override
+        public void onRouteError(String message) {
+            WritableMap map = Arguments.createMap();
+            map.putString("error", message);
+            sendEvent("onNavigationError", map);
+        }
+
+        @Override
+        public void onLegReady(String key, NavigationEngine.Waypoint destination,
+                List<NavigationEngine.RouteInfo> routes) {
+            snapshots.saveLeg(key, destination, routes);
+        }
+
+        @Override
+        public void onSessionStarted(NavigationEngine engine) {
+            engine.unregisterProgressListener(progressListener);
+            engine.unregisterVoiceListener(voiceListener);
+            engine.unregisterArrivalListener(arrivalListener);
+            engine.unregisterRoutesListener(routesListener);
+
+            engine.registerRoutesListener(routesListener);
+            engine.registerProgressListener(progressListener);
+            engine.registerVoiceListener(voiceListener);
+            engine.registerArrivalListener(arrivalListener);
+            tileCache.start(engine);
+            routeSwitcher.start(engine);
+            stallWatchdog.start();
+        }
 
-        nav.registerRouteProgressObserver(routeProgressObserver);
-        nav.registerVoiceInstructionsObserver(voiceObserver);
-        nav.registerArrivalObserver(arrivalObserver);
+        @Override
+        public void onSessionStopping(NavigationEngine engine) {
+            stallWatchdog.stop();
+            tileCache.stop();
+            routeSwitcher.stop();
+            engine.unregisterProgressListener(progressListener);
+            engine.unregisterVoiceListener(voiceListener);
+            engine.unregisterArrivalListener(arrivalListener);
+            engine.unregisterRoutesListener(routesListener);
+        }
+
+        @Override
+        public void onAdoptionDiscarded(String key) {
+            Log.e(TAG, "♻️ Viagem recuperada " + key + " descartada");
+            stopNavigationService();
+            WritableMap map = Arguments.createMap();
+            map.putString("sessionKey", key);
+            sendEvent("onNavigationRecoveryDiscarded", map);
+        }
+    };
+
+    @ReactMethod
+    public void startNavigation(ReadableMap destination) {
+        Log.e(TAG, "📍 startNavigation CALLED");
+        if (!isValidCoordinate(destination)) {
+            Log.e(TAG, "Destino inválido!");
+            return;
+        }
+        NavigationEngine.Waypoint origin = destination.hasKey("originLat") && destination.hasKey("originLng")
+                ? new NavigationEngine.Waypoint(destination.getDouble("originLat"), destination.getDouble("originLng"))
+                : null;
 
         startNavigationService();
-        requestNavigationRoute(destination);
+        // No trip id: always a fresh session, as before
+        session.start(null, toWaypoint(destination), origin);
     }
 
     @ReactMethod
     public void stopNavigation() {
-        MapboxNavigation nav = NavigationManager.get(context);
-        nav.stopTripSession();
-        nav.unregisterRouteProgressObserver(routeProgressObserver);
-        nav.unregisterVoiceInstructionsObserver(voiceObserver);
-        nav.unregisterArrivalObserver(arrivalObserver);
-
-        if (uberLocationObserver != null) {
-            nav.unregisterLocationObserver(uberLocationObserver);
-            uberLocationObserver = null;
-        }
+        session.stop();
         if (voicePlayer != null) {
             voicePlayer.clear();
             voicePlayer.shutdown();
             voicePlayer = null;
         }
-        isTripSessionActive = false;
         stopNavigationService();
     }
 
+    /**
+     * Background refresh of the active route's traffic data.
+     * { intervalMs, etaChangeThresholdSeconds, etaChangeThresholdRatio }, all optional;
+     * onEtaChanged fires when a refresh moves the ETA by at least
+     * max(thresholdSeconds, thresholdRatio * remaining).
+     * Resolves with { intervalApplied }: false when the SDK instance is
+     * already running and the interval is deferred to the next one (at the
+     * latest the next app start).
+     */
+    @ReactMethod
+    public void setRouteRefreshOptions(ReadableMap options, Promise promise) {
+        if (options == null) {
+            promise.reject("INVALID_OPTIONS", "Opções de refresh ausentes");
+            return;
+        }
+        Long intervalMs = options.hasKey("intervalMs") ? (long) options.getDouble("intervalMs") : null;
+        double seconds = options.hasKey("etaChangeThresholdSeconds")
+                ? options.getDouble("etaChangeThresholdSeconds")
+                : EtaChangeDetector.DEFAULT_MIN_DELTA_SECONDS;
+        double ratio = options.hasKey("etaChangeThresholdRatio")
+                ? options.getDouble("etaChangeThresholdRatio")
+                : EtaChangeDetector.DEFAULT_MIN_DELTA_RATIO;
+        engine.runOnEngineThread(() -> {
+            etaDetector.setThresholds(seconds, ratio);
+            boolean applied = intervalMs == null || engine.setRouteRefreshInterval(intervalMs);
+            if (!applied) {
+                Log.e(TAG, "🔄 Intervalo de refresh " + intervalMs + "ms aplicado na próxima sessão do SDK");
+            }
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("intervalApplied", applied);
+            promise.resolve(result);
+        });
+    }
+
+    /**
+     * Predictive tile cache along the active route, all optional:
+     * { corridorMeters, lookAheadMeters, byteBudget, maxBytesPerSecond, minZoom, maxZoom }.
+     * Applies from the next prefetch window.
+     */
+    @ReactMethod
+    public void setTileCacheOptions(ReadableMap options) {
+        if (options == null)
+            return;
+        engine.runOnEngineThread(() -> {
+            PredictiveTileCache.Options current = tileCache.getOptions();
+            tileCache.setOptions(new PredictiveTileCache.Options(
+                    options.hasKey("corridorMeters") ? options.getDouble("corridorMeters") : current.corridorMeters,
+                    options.hasKey("lookAheadMeters") ? options.getDouble("lookAheadMeters") : current.lookAheadMeters,
+                    options.hasKey("byteBudget") ? (long) options.getDouble("byteBudget") : current.byteBudget,
+                    options.hasKey("maxBytesPerSecond") ? options.getInt("maxBytesPerSecond") : current.maxBytesPerSecond,
+                    options.hasKey("minZoom") ? options.getInt("minZoom") : current.minZoom,
+                    options.hasKey("maxZoom") ? options.getInt("maxZoom") : current.maxZoom));
+        });
+    }
+
+    /**
+     * Predictive tile cache metrics for the current (or last) trip session:
+     * { running, prefetches, completedPrefetches, prefetchedBytes, byteBudget,
+     *   budgetExhausted, tileRequests, cacheHits, tileStoreHits, hitRate }
+     */
+    @ReactMethod
+    public void getTileCacheStats(Promise promise) {
+        engine.runOnEngineThread(() -> {
+            PredictiveTileCache.Stats stats = tileCache.snapshot();
+            WritableMap map = Arguments.createMap();
+            map.putBoolean("running", stats.running);
+            map.putDouble("prefetches", stats.prefetches);
+            map.putDouble("completedPrefetches", stats.completedPrefetches);
+            map.putDouble("prefetchedBytes", stats.prefetchedBytes);
+            map.putDouble("byteBudget", stats.byteBudget);
+            map.putBoolean("budgetExhausted", stats.budgetExhausted);
+            map.putDouble("tileRequests", stats.tileRequests);
+            map.putDouble("cacheHits", stats.cacheHits);
+            map.putDouble("tileStoreHits", stats.tileStoreHits);
+            map.putDouble("hitRate", stats.hitRate());
+            promise.resolve(map);
+        });
+    }
+
+    /**
+     * Alternative route switching for the current (or last) trip session:
+     * { running, alternatives, localSwitches, sdkSwitches, networkReroutes, switchRate }
+     */
+    @ReactMethod
+    public void getRouteSwitchStats(Promise promise) {
+        engine.runOnEngineThread(() -> {
+            AlternativeRouteSwitcher.Stats stats = routeSwitcher.snapshot();
+            WritableMap map = Arguments.createMap();
+            map.putBoolean("running", stats.running);
+            map.putInt("alternatives", stats.alternatives);
+            map.putDouble("localSwitches", stats.localSwitches);
+            map.putDouble("sdkSwitches", stats.sdkSwitches);
+            map.putDouble("networkReroutes", stats.networkReroutes);
+            map.putDouble("switchRate", stats.switchRate());
+            promise.resolve(map);
+        });
+    }
+
+    @ReactMethod
+    public void getNavigationState(Promise promise) {
+        promise.resolve(session.getState().jsName());
+    }
+
+    /**
+     * Main-thread stalls recorded during trip sessions, oldest first:
+     * { running, thresholdMs, probes, stalls, maxLatencyMs,
+     *   records: [{ startedAt, durationMs, callback, appFrame, samples }] }
+     */
+    @ReactMethod
+    public void getMainThreadStalls(Promise promise) {
+        MainThreadWatchdog.Stats stats = stallWatchdog.snapshot();
+        WritableMap map = Arguments.createMap();
+        map.putBoolean("running", stats.running);
+        map.putDouble("thresholdMs", stats.thresholdMs);
+        map.putDouble("probes", stats.probes);
+        map.putDouble("stalls", stats.stalls);
+        map.putDouble("maxLatencyMs", stats.maxLatencyMs);
+
+        WritableArray records = Arguments.createArray();
+        for (MainThreadWatchdog.StallRecord record : stats.records) {
+            WritableMap item = Arguments.createMap();
+            item.putDouble("startedAt", record.startedAtMs);
+            item.putDouble("durationMs", record.durationMs);
+            item.putString("callback", record.callback);
+            item.putString("appFrame", record.appFrame);
+            WritableArray samples = Arguments.createArray();
+            for (List<String> sample : record.samples) {
+                WritableArray frames = Arguments.createArray();
+                for (String frame : sample) {
+                    frames.pushString(frame);
+                }
+                samples.pushArray(frames);
+            }
+            item.putArray("samples", samples);
+            records.pushMap(item);
+        }
+        map.putArray("records", records);
+        promise.resolve(map);
+    }
+
+    @ReactMethod
+    public void clearMainThreadStalls() {
+        stallWatchdog.clear();
+    }
+
+    /**
+     * Timings of the last recovery from the on-disk snapshot in this process,
+     * or null if navigation wasn't restored.
+     */
+    @ReactMethod
+    public void getLastRecovery(Promise promise) {
+        NavigationRecovery.Result result = NavigationRecovery.get(context).lastResult();
+        promise.resolve(result != null ? recoveryToMap(result) : null);
+    }
+
+    /**
+     * Stops the recovered session if startUberRide hasn't confirmed it yet,
+     * e.g. when the persisted ride status says the trip is over. Leaves any
+     * other session alone.
+     */
+    @ReactMethod
+    public void discardRecoveredNavigation() {
+        session.discardAdopted();
+    }
+
+    private static WritableMap recoveryToMap(NavigationRecovery.Result result) {
+        WritableMap map = Arguments.createMap();
+        map.putString("sessionKey", result.snapshot.key);
+        map.putString("trigger", result.trigger);
+        map.putDouble("recoveryMs", result.recoveryMs);
+        map.putDouble("loadMs", result.loadMs);
+        map.putDouble("snapshotAgeMs", result.snapshotAgeMs);
+        map.putDouble("distanceRemaining", result.snapshot.distanceRemaining);
+        map.putDouble("durationRemaining", result.snapshot.durationRemaining);
+        return map;
+    }
+
     @Override
     public void onCatalystInstanceDestroy() {
         super.onCatalystInstanceDestroy();
-        MapboxNavigation nav = NavigationManager.get(context);
-        if (nav != null) {
-            nav.unregisterVoiceInstructionsObserver(voiceObserver);
-        }
+        engine.runOnEngineThread(() -> engine.unregisterVoiceListener(voiceListener));
         if (speechApi != null) {
             speechApi.cancel();
             // shutdown() is not available/needed in some versions, cancel() is enough for cleanup
@@ -205,7 +470,25 @@ public class MapboxNavigationModule extends ReactContextBaseJavaModule {
         if (voicePlayer != null) {
             voicePlayer.shutdown();
         }
-        NavigationManager.destroy();
+        engine.runOnEngineThread(() -> {
+            tileCache.stop();
+            routeSwitcher.stop();
+        });
+        // Destroy only after the stop has run on the engine thread; its
+        // unregister calls would otherwise recreate the SDK instance
+        session.shutdown(NavigationManager::destroy);
+        tripScorer.shutdown();
+        stallWatchdog.stop();
+        UiThreadUtil.runOnUiThread(MapboxNavigationViewPool::clear);
+    }
+
+    /**
+     * Inflates the navigation map ahead of mount so the first frame doesn't
+     * pay for GL setup and style loading.
+     */
+    @ReactMethod
+    public void prewarmMap() {
+        UiThreadUtil.runOnUiThread(() -> MapboxNavigationViewPool.prewarm(context));
     }
 
     @ReactMethod
@@ -218,56 +501,8 @@ public class MapboxNavigationModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void startUberRide(ReadableMap pickup, ReadableMap dropoff, String status) {
-        Log.e(TAG, "🚀 startUberRide CALLED - status: " + status);
-        if (isTripSessionActive)
-            stopNavigation();
-
-        isTripSessionActive = true;
-
-        new android.os.Handler(android.os.Looper.getMainLooper()).post(() -> {
-            MapboxNavigation nav = NavigationManager.get(context);
-            nav.startTripSession();
-            Log.e(TAG, "✅ Trip session started");
-        });
-
-        MapboxNavigation nav = NavigationManager.get(context);
-        // ❌ REMOVED: Voice components now initialized in constructor
-
-        nav.unregisterRouteProgressObserver(routeProgressObserver);
-        nav.unregisterVoiceInstructionsObserver(voiceObserver);
-        nav.unregisterArrivalObserver(arrivalObserver);
-
-        nav.registerRouteProgressObserver(routeProgressObserver);
-        nav.registerVoiceInstructionsObserver(voiceObserver);
-        nav.registerArrivalObserver(arrivalObserver);
-
-        startNavigationService();
-        Log.e(TAG, "📍 Calling requestUberRoute...");
-        requestUberRoute(pickup, dropoff, status);
-    }
-
-    private boolean isValidCoordinate(ReadableMap coord) {
-        return coord != null && coord.hasKey("lat") && coord.hasKey("lng");
-    }
-
-    private void requestNavigationRoute(ReadableMap destination) {
-        Log.e(TAG, "📍 requestNavigationRoute CALLED");
-        if (!isValidCoordinate(destination)) {
-            Log.e(TAG, "Destino inválido!");
-            return;
-        }
-
-        List<Point> points = new ArrayList<>();
-        points.add(Point.fromLngLat(
-                destination.hasKey("originLng") ? destination.getDouble("originLng") : 0,
-                destination.hasKey("originLat") ? destination.getDouble("originLat") : 0));
-        points.add(Point.fromLngLat(destination.getDouble("lng"), destination.getDouble("lat")));
-        buildAndRequestRoute(points);
-    }
-
-    private void requestUberRoute(ReadableMap pickup, ReadableMap dropoff, String status) {
-        Log.e(TAG, "📍 requestUberRoute CALLED - status: " + status + " - pickup: " + pickup + ", dropoff: " + dropoff);
+    public void startUberRide(ReadableMap pickup, ReadableMap dropoff, String status, String tripId) {
+        Log.e(TAG, "🚀 startUberRide CALLED - trip: " + tripId + " status: " + status);
         if (!isValidCoordinate(pickup) || !isValidCoordinate(dropoff)) {
             Log.e(TAG, "❌ Pickup ou Dropoff inválido!");
             WritableMap map = Arguments.createMap();
@@ -275,105 +510,111 @@ public class MapboxNavigationModule extends ReactContextBaseJavaModule {
             sendEvent("onNavigationError", map);
             return;
         }
-        Log.e(TAG, "✅ Coordinates valid, registering LocationObserver...");
 
-        // ✅ FIX 5: Use LocationObserver instead of DeviceLocationProvider
-        MapboxNavigation nav = NavigationManager.get(context);
+        // accepted: Driver -> Pickup, otherwise Driver -> Destination.
+        // Origin is the first GPS fix, resolved by the session.
+        NavigationEngine.Waypoint destination = "accepted".equals(status) ? toWaypoint(pickup) : toWaypoint(dropoff);
 
-        if (uberLocationObserver != null) {
-            nav.unregisterLocationObserver(uberLocationObserver);
+        startNavigationService();
+        session.start(sessionKey(tripId, status), destination, null);
+    }
+
+    /**
+     * tripId + phase. "accepted" maps to pickup, everything else to dropoff.
+     * Null when JS didn't send a trip id, which keeps the old always-restart
+     * behaviour.
+     */
+    private static String sessionKey(String tripId, String status) {
+        if (tripId == null || tripId.isEmpty())
+            return null;
+        return tripId + ":" + ("accepted".equals(status) ? "pickup" : "dropoff");
+    }
+
+    /**
+     * Ranks pending trips by approximate driving ETA to pickup (see TripScorer).
+     * Resolves with [{ id, etaSeconds, distanceMeters, straightLineMeters, source }]
+     * sorted by ETA. Origin defaults to the last known device location.
+     *
+     * @param trips  formatted trips as broadcast by the backend ({ id, coords: { lat, lng } })
+     * @param origin optional { lat, lng } of the driver
+     */
+    @ReactMethod
+    public void scoreTrips(ReadableArray trips, ReadableMap origin, Promise promise) {
+        double[] from = isValidCoordinate(origin)
+                ? new double[] { origin.getDouble("lat"), origin.getDouble("lng") }
+                : lastKnownPosition();
+        if (from == null) {
+            promise.reject("NO_LOCATION", "Localização do motorista indisponível");
+            return;
         }
 
-        uberLocationObserver = new LocationObserver() {
-            private boolean hasReceivedLocation = false;
+        List<TripScorer.Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < trips.size(); i++) {
+            ReadableMap trip = trips.getMap(i);
+            if (trip == null || !trip.hasKey("id"))
+                continue;
+            // getMap throws on a missing key; skip the trip like bad coordinates
+            ReadableMap pickup = trip.hasKey("coords") ? trip.getMap("coords")
+                    : trip.hasKey("pickup_location") ? trip.getMap("pickup_location") : null;
+            if (!isValidCoordinate(pickup))
+                continue;
+            String id = trip.getType("id") == ReadableType.Number
+                    ? String.valueOf((long) trip.getDouble("id"))
+                    : trip.getString("id");
+            candidates.add(new TripScorer.Candidate(id, pickup.getDouble("lat"), pickup.getDouble("lng")));
+        }
 
+        tripScorer.scoreAsync(from[0], from[1], candidates, new TripScorer.Callback() {
             @Override
-            public void onNewRawLocation(@NonNull Location location) {
+            public void onScored(List<TripScorer.Score> scores) {
+                WritableArray result = Arguments.createArray();
+                for (TripScorer.Score score : scores) {
+                    WritableMap map = Arguments.createMap();
+                    map.putString("id", score.id);
+                    map.putDouble("etaSeconds", score.etaSeconds);
+                    map.putDouble("distanceMeters", score.distanceMeters);
+                    map.putDouble("straightLineMeters", score.straightLineMeters);
+                    map.putString("source", score.source);
+                    result.pushMap(map);
+                }
+                promise.resolve(result);
             }
 
             @Override
-            public void onNewLocationMatcherResult(@NonNull LocationMatcherResult result) {
-                Log.e(TAG, "📍 LocationObserver FIRED!");
-                if (hasReceivedLocation) {
-                    Log.e(TAG, "⚠️ Location already received, ignoring");
-                    return;
-                }
-                hasReceivedLocation = true;
-
-                Location location = result.getEnhancedLocation();
-                Log.e(TAG, "✅ Got location: " + location.getLatitude() + ", " + location.getLongitude());
-
-                List<Point> points = new ArrayList<>();
-                points.add(Point.fromLngLat(location.getLongitude(), location.getLatitude()));
-
-                if ("accepted".equals(status)) {
-                    Log.e(TAG, "📍 Phase: Pickup (Driver -> Pickup)");
-                    points.add(Point.fromLngLat(pickup.getDouble("lng"), pickup.getDouble("lat")));
-                } else {
-                    Log.e(TAG, "📍 Phase: Ongoing (Driver -> Destination)");
-                    points.add(Point.fromLngLat(dropoff.getDouble("lng"), dropoff.getDouble("lat")));
-                }
-
-                Log.e(TAG, "🗺️ Calling buildAndRequestRoute with " + points.size() + " points...");
-                buildAndRequestRoute(points);
-
-                // Unregister after getting location
-                nav.unregisterLocationObserver(uberLocationObserver);
+            public void onError(Exception error) {
+                promise.reject("SCORE_FAILED", error);
             }
-        };
-
-        nav.registerLocationObserver(uberLocationObserver);
+        });
     }
 
-    private void buildAndRequestRoute(List<Point> points) {
-        Log.e(TAG, "🗺️ buildAndRequestRoute CALLED with " + points.size() + " points");
-        MapboxNavigation nav = NavigationManager.get(context);
-
-        RouteOptions options = RouteOptions.builder()
-                .coordinatesList(points)
-                .steps(true)
-                .voiceInstructions(true)
-                .bannerInstructions(true)
-                .language("pt")
-                .profile(DirectionsCriteria.PROFILE_DRIVING)
-                .build();
-
-        Log.e(TAG, "📡 Requesting routes from Mapbox API...");
-        // ✅ FIX 4: Ensure Main Thread for all Mapbox calls
-        new android.os.Handler(android.os.Looper.getMainLooper()).post(() -> {
-            nav.requestRoutes(options, new NavigationRouterCallback() {
-                @Override
-                public void onRoutesReady(@NonNull List<NavigationRoute> routes, @NonNull String routerOrigin) {
-                    Log.e(TAG, "🎉 onRoutesReady CALLED - " + routes.size() + " routes received");
-                    // Already on Main Thread from outer post()
-                    nav.setNavigationRoutes(routes);
-                    Log.e(TAG, "✅ setNavigationRoutes() called");
-                    nav.startTripSession();
-                    Log.e(TAG, "✅ startTripSession() called");
-                    isTripSessionActive = true;
-                }
+    @SuppressLint("MissingPermission")
+    private double[] lastKnownPosition() {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            return null;
+        }
+        LocationManager locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        if (locationManager == null)
+            return null;
+        android.location.Location best = null;
+        for (String provider : locationManager.getProviders(true)) {
+            android.location.Location candidate = locationManager.getLastKnownLocation(provider);
+            if (candidate != null && (best == null || candidate.getTime() > best.getTime())) {
+                best = candidate;
+            }
+        }
+        return best == null ? null : new double[] { best.getLatitude(), best.getLongitude() };
+    }
 
-                @Override
-                public void onFailure(@NonNull List<RouterFailure> reasons, @NonNull RouteOptions routeOptions) {
-                    Log.e(TAG, "❌ onFailure CALLED - " + reasons.size() + " errors");
-                    for (RouterFailure failure : reasons) {
-                        Log.e(TAG, "  ❌ Error: " + failure.getMessage());
-                    }
-                    WritableMap map = Arguments.createMap();
-                    map.putString("error",
-                            reasons.isEmpty() ? "Unknown error" : reasons.get(0).getMessage());
-                    sendEvent("onNavigationError", map);
-                }
+    private boolean isValidCoordinate(ReadableMap coord) {
+        return coord != null && coord.hasKey("lat") && coord.hasKey("lng");
+    }
 
-                @Override
-                public void onCanceled(@NonNull RouteOptions routeOptions, @NonNull String routerOrigin) {
-                    Log.i(TAG, "Route request canceled");
-                }
-            });
-        });
+    private static NavigationEngine.Waypoint toWaypoint(ReadableMap coord) {
+        return new NavigationEngine.Waypoint(coord.getDouble("lat"), coord.getDouble("lng"));
     }
 
-    private void sendNavigationProgress(RouteProgress progress, List<Maneuver> maneuvers) {
+    private void sendNavigationProgress(NavigationEngine.ProgressInfo progress, List<Maneuver> maneuvers) {
         WritableMap map = Arguments.createMap();
         if (maneuvers != null && !maneuvers.isEmpty()) {
             map.putString("instruction", maneuvers.get(0).getPrimary().getText());
@@ -381,23 +622,36 @@ public class MapboxNavigationModule extends ReactContextBaseJavaModule {
         }
 
         // Total Trip Metrics
-        map.putDouble("distanceRemaining", progress.getDistanceRemaining());
-        map.putDouble("durationRemaining", progress.getDurationRemaining());
+        map.putDouble("distanceRemaining", progress.distanceRemaining);
+        map.putDouble("durationRemaining", progress.durationRemaining);
 
         // Step (Maneuver) Specific Metrics
-        if (progress.getCurrentLegProgress() != null
-                && progress.getCurrentLegProgress().getCurrentStepProgress() != null) {
-            map.putDouble("stepDistanceRemaining",
-                    progress.getCurrentLegProgress().getCurrentStepProgress().getDistanceRemaining());
-            map.putDouble("stepDurationRemaining",
-                    progress.getCurrentLegProgress().getCurrentStepProgress().getDurationRemaining());
-        }
+        map.putDouble("stepDistanceRemaining", progress.stepDistanceRemaining);
+        map.putDouble("stepDurationRemaining", progress.stepDurationRemaining);
 
-        map.putDouble("percentageTraveled",
-                progress.getDistanceTraveled() / (progress.getDistanceTraveled() + progress.getDistanceRemaining()));
+        double total = progress.distanceTraveled + progress.distanceRemaining;
+        map.putDouble("percentageTraveled", total > 0 ? progress.distanceTraveled / total : 0);
         sendEvent("onNavigationProgress", map);
     }
 
+    private void onRouteSwitched(List<NavigationEngine.RouteInfo> routes) {
+        snapshots.saveRoutes(routes);
+        WritableMap map = Arguments.createMap();
+        map.putString("routeId", routes.get(0).id);
+        map.putDouble("distance", routes.get(0).distanceMeters);
+        map.putDouble("duration", routes.get(0).durationSeconds);
+        sendEvent("onRouteSwitched", map);
+    }
+
+    private void sendEtaChanged(EtaChangeDetector.Change change) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("durationRemaining", change.durationRemaining);
+        map.putDouble("previousDurationRemaining", change.previousDurationRemaining);
+        map.putDouble("deltaSeconds", change.deltaSeconds());
+        map.putDouble("distanceRemaining", change.distanceRemaining);
+        sendEvent("onEtaChanged", map);
+    }
+
     private void sendEvent(String name, WritableMap params) {
         if (context.hasActiveReactInstance()) {
             context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
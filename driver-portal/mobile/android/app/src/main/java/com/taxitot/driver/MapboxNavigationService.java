@@ -38,6 +38,11 @@ public class MapboxNavigationService extends Service {
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent == null) {
+            // START_STICKY restart after the process was killed: resume the
+            // trip from the on-disk snapshot before JS is even running
+            NavigationRecovery.get(this).resume("service");
+        }
         return START_STICKY;
     }
 
@@ -1,13 +1,23 @@
 package com.taxitot.driver;
 
 import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+import android.view.Display;
 import android.widget.FrameLayout;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+
+import com.mapbox.bindgen.Value;
 
 import com.mapbox.common.location.Location;
 import com.mapbox.maps.MapView;
 import com.mapbox.maps.Style;
+import com.mapbox.maps.StyleObjectInfo;
+import com.mapbox.maps.TileCacheBudget;
+import com.mapbox.maps.TileCacheBudgetInMegabytes;
 import com.mapbox.maps.ImageHolder;
 import com.mapbox.maps.plugin.locationcomponent.LocationComponentPlugin;
 import com.mapbox.maps.plugin.LocationPuck2D;
@@ -15,11 +25,9 @@ import com.mapbox.maps.plugin.animation.CameraAnimationsPlugin;
 import static com.mapbox.maps.plugin.Plugin.MAPBOX_LOCATION_COMPONENT_PLUGIN_ID;
 import static com.mapbox.maps.plugin.Plugin.MAPBOX_CAMERA_PLUGIN_ID;
 import androidx.core.content.ContextCompat;
-import com.mapbox.navigation.core.MapboxNavigation;
+import com.mapbox.navigation.base.route.NavigationRoute;
+import com.mapbox.navigation.base.trip.model.RouteProgress;
 import com.mapbox.navigation.core.trip.session.LocationMatcherResult;
-import com.mapbox.navigation.core.trip.session.LocationObserver;
-import com.mapbox.navigation.core.trip.session.RouteProgressObserver;
-import com.mapbox.navigation.core.directions.session.RoutesObserver;
 import com.mapbox.navigation.ui.maps.camera.NavigationCamera;
 import com.mapbox.navigation.ui.maps.camera.data.FollowingFrameOptions;
 import com.mapbox.navigation.ui.maps.camera.data.MapboxNavigationViewportDataSource;
@@ -36,12 +44,29 @@ import com.mapbox.navigation.ui.maps.route.line.model.MapboxRouteLineViewOptions
 import com.mapbox.navigation.ui.maps.route.line.model.RouteLineError;
 import com.mapbox.navigation.ui.maps.route.line.model.RouteSetValue;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * MapboxNavigationView implementation for V3 SDK
  * handles RouteLine, Camera and Location Puck
  */
 public class MapboxNavigationView extends FrameLayout {
 
+    // In-memory tile cache cap per map; keeps GL texture and tile memory
+    // bounded on long trips instead of growing with every area visited
+    static final long TILE_CACHE_BUDGET_MB = 48;
+
+    // Style layers hidden in the lite profile: decoration that costs draw
+    // calls and symbol placement but doesn't help a driver follow the route
+    private static final String[] LITE_HIDDEN_LAYER_PREFIXES = {
+            "building", "poi-", "landuse", "land-structure", "hillshade", "national-park",
+            "natural-", "transit-", "airport-", "aeroway", "path", "golf", "pitch-",
+            "contour", "water-point-label", "water-line-label", "waterway-label",
+            "settlement-subdivision"
+    };
+
     private final MapView mapView;
     private final NavigationCamera navigationCamera;
     private final MapboxNavigationViewportDataSource viewportDataSource;
@@ -49,21 +74,39 @@ public class MapboxNavigationView extends FrameLayout {
     // Handler for Main Thread UI updates
     private final android.os.Handler mainHandler = new android.os.Handler(android.os.Looper.getMainLooper());
 
-    // V3 Visual Components
-    private final MapboxRouteLineApi routeLineApi;
-    private final MapboxRouteLineView routeLineView;
+    // V3 Visual Components (route line is rebuilt when the render profile changes)
+    private MapboxRouteLineApi routeLineApi;
+    private MapboxRouteLineView routeLineView;
     private final NavigationLocationProvider locationProvider = new NavigationLocationProvider();
 
     // Observers
-    private final RouteProgressObserver routeProgressObserver;
-    private final RoutesObserver routesObserver;
-    private final LocationObserver locationObserver;
+    private final NavigationEngine.ProgressListener progressListener;
+    private final NavigationEngine.RoutesListener routesListener;
+    private final NavigationEngine.LocationListener locationListener;
+
+    // Style currently applied to the map, so pooled views don't reload it
+    private String currentStyleUri = Style.MAPBOX_STREETS;
+
+    // "auto", "full" or "lite" (renderMode prop); auto follows device class
+    // and thermal status
+    private String renderMode = "auto";
+    private RenderProfile profile;
+    private final RenderProfile deviceProfile;
+    private Object thermalListener;
+
+    // Last routes drawn, redrawn when the profile swaps the route line
+    private List<NavigationRoute> currentRoutes = Collections.emptyList();
+
+    private boolean observersRegistered = false;
+    private boolean destroyed = false;
 
     public MapboxNavigationView(@NonNull Context context) {
         super(context);
 
         this.mapView = new MapView(context);
         addView(mapView);
+        mapView.getMapboxMap().setTileCacheBudget(
+                TileCacheBudget.valueOf(new TileCacheBudgetInMegabytes(TILE_CACHE_BUDGET_MB)));
 
         // 1. Initialize ViewportDataSource
         this.viewportDataSource = new MapboxNavigationViewportDataSource(mapView.getMapboxMap());
@@ -87,32 +130,17 @@ public class MapboxNavigationView extends FrameLayout {
                 viewportDataSource,
                 stateTransition);
 
-        // 3. Initialize RouteLine API & View
-        this.routeLineApi = new MapboxRouteLineApi(new MapboxRouteLineApiOptions.Builder().build());
-        this.routeLineView = new MapboxRouteLineView(new MapboxRouteLineViewOptions.Builder(context).build());
+        // 3. Pick the render profile (FPS cap, route line options, camera pitch)
+        this.deviceProfile = RenderProfile.detectDeviceClass(context);
+        this.profile = RenderProfile.detect(context);
+        mapView.setMaximumFps(maxFpsFor(profile));
+        buildRouteLine(profile);
 
         // 4. Setup Map Style & Location Puck
         mapView.getMapboxMap().loadStyleUri(
                 Style.MAPBOX_STREETS,
                 style -> {
-                    // ✅ IMPLEMENTAÇÃO OFICIAL V11
-                    LocationComponentPlugin locationPlugin = (LocationComponentPlugin) mapView
-                            .getPlugin(MAPBOX_LOCATION_COMPONENT_PLUGIN_ID);
-
-                    if (locationPlugin != null) {
-                        locationPlugin.setLocationProvider(locationProvider);
-                        locationPlugin.setEnabled(true);
-                        locationPlugin.setPuckBearingEnabled(true);
-
-                        LocationPuck2D puck = new LocationPuck2D(
-                                null, // topImage
-                                ImageHolder.from(R.drawable.ic_car), // bearingImage
-                                null, // shadowImage
-                                null, // scaleExpression
-                                1.0f // opacity
-                        );
-                        locationPlugin.setLocationPuck(puck);
-                    }
+                    onStyleLoaded(style);
 
                     // Set Camera to Following by default once map is loaded
                     navigationCamera.requestNavigationCameraToFollowing();
@@ -121,72 +149,126 @@ public class MapboxNavigationView extends FrameLayout {
         // 5. OBSERVERS IMPLEMENTATION
 
         // A. Route Progress -> Update Camera & Route Line coloring
-        this.routeProgressObserver = progress -> {
-            mainHandler.post(() -> {
+        // Rendering needs the Mapbox payloads; engines without them
+        // (FakeNavigationEngine) leave the map untouched
+        this.progressListener = info -> {
+            if (!(info.nativeValue instanceof RouteProgress))
+                return;
+            RouteProgress progress = (RouteProgress) info.nativeValue;
+            postTraced("view.progress", () -> {
+                if (!observersRegistered)
+                    return;
                 viewportDataSource.onRouteProgressChanged(progress);
                 viewportDataSource.evaluate();
             });
         };
 
         // B. Routes -> Draw the line on the map
-        this.routesObserver = result -> {
-            mainHandler.post(() -> {
-                if (result.getNavigationRoutes().isEmpty()) {
-                    // Clear route line
-                    routeLineApi.clearRouteLine(expected -> {
-                        if (mapView.getMapboxMap().getStyle() != null) {
-                            routeLineView.renderClearRouteLineValue(mapView.getMapboxMap().getStyle(), expected);
-                        }
-                    });
+        this.routesListener = (infos, reason) -> {
+            List<NavigationRoute> routes = new ArrayList<>(infos.size());
+            for (NavigationEngine.RouteInfo info : infos) {
+                if (!(info.nativeValue instanceof NavigationRoute))
+                    return;
+                routes.add((NavigationRoute) info.nativeValue);
+            }
+            postTraced("view.routes", () -> {
+                if (!observersRegistered)
+                    return;
+                if (reason == NavigationEngine.RoutesChangeReason.REFRESH && !routes.isEmpty()) {
+                    // Same geometry, new congestion: recolor the line, keep the camera
+                    currentRoutes = routes;
+                    drawRouteLine(routes);
                     return;
                 }
+                renderRoutes(routes);
+            });
+        };
 
-                // Draw new route
-                routeLineApi.setNavigationRoutes(result.getNavigationRoutes(), expected -> {
-                    if (mapView.getMapboxMap().getStyle() != null) {
-                        routeLineDrawData(expected);
-                    }
-                });
-
-                // Focus camera on new route
-                viewportDataSource.onRouteChanged(result.getNavigationRoutes().get(0));
+        // C. Location -> Update Puck & Camera
+        this.locationListener = fix -> {
+            if (!(fix.nativeValue instanceof LocationMatcherResult))
+                return;
+            LocationMatcherResult result = (LocationMatcherResult) fix.nativeValue;
+            postTraced("view.location", () -> {
+                if (!observersRegistered)
+                    return;
+                Location location = result.getEnhancedLocation();
+                // Update properties for the Puck; key points animate the puck
+                // between fixes, which lite skips
+                List<Location> keyPoints = profile.reduced
+                        ? Collections.<Location>emptyList()
+                        : result.getKeyPoints();
+                locationProvider.changePosition(location, keyPoints, null, null);
+
+                // Update properties for the Camera
+                viewportDataSource.onLocationChanged(location);
+                updateCameraBySpeed(location.getSpeed());
                 viewportDataSource.evaluate();
-
-                // Uber-style: Overview once, then transition to Following after 1.5s
-                navigationCamera.requestNavigationCameraToOverview();
-                mainHandler.postDelayed(() -> {
-                    navigationCamera.requestNavigationCameraToFollowing();
-                }, 1500);
             });
         };
 
-        // C. Location -> Update Puck & Camera
-        this.locationObserver = new LocationObserver() {
-            @Override
-            public void onNewRawLocation(@NonNull Location location) {
-                // Raw location updates if needed
+        // 6. Observers are registered in onAttachedToWindow so a pooled view
+        // picks them up again every time it is re-mounted
+    }
+
+    private void renderRoutes(List<NavigationRoute> routes) {
+        currentRoutes = routes;
+        if (routes.isEmpty()) {
+            // Clear route line
+            routeLineApi.clearRouteLine(expected -> {
+                if (mapView.getMapboxMap().getStyle() != null) {
+                    routeLineView.renderClearRouteLineValue(mapView.getMapboxMap().getStyle(), expected);
+                }
+            });
+            return;
+        }
+
+        // Draw new route
+        drawRouteLine(routes);
+
+        // Focus camera on new route
+        viewportDataSource.onRouteChanged(routes.get(0));
+        viewportDataSource.evaluate();
+
+        // Uber-style: Overview once, then transition to Following after 1.5s
+        navigationCamera.requestNavigationCameraToOverview();
+        mainHandler.postDelayed(() -> {
+            if (observersRegistered) {
+                navigationCamera.requestNavigationCameraToFollowing();
             }
+        }, 1500);
+    }
 
-            @Override
-            public void onNewLocationMatcherResult(@NonNull LocationMatcherResult result) {
-                mainHandler.post(() -> {
-                    Location location = result.getEnhancedLocation();
-                    // Update properties for the Puck
-                    locationProvider.changePosition(location, result.getKeyPoints(), null, null);
-
-                    // Update properties for the Camera
-                    viewportDataSource.onLocationChanged(location);
-                    updateCameraBySpeed(location.getSpeed());
-                    viewportDataSource.evaluate();
-                });
+    private void drawRouteLine(List<NavigationRoute> routes) {
+        // Lite draws the primary route only; alternatives double the line layers
+        List<NavigationRoute> drawn = profile.reduced && routes.size() > 1 ? routes.subList(0, 1) : routes;
+        routeLineApi.setNavigationRoutes(drawn, expected -> {
+            if (mapView.getMapboxMap().getStyle() != null) {
+                routeLineDrawData(expected);
             }
-        };
+        });
+    }
+
+    @VisibleForTesting
+    void postTraced(String label, Runnable update) {
+        mainHandler.post(() -> {
+            String previous = MainThreadWatchdog.enter(label);
+            try {
+                update.run();
+            } finally {
+                MainThreadWatchdog.exit(previous);
+            }
+        });
+    }
 
-        // 6. REGISTER OBSERVERS
-        MapboxNavigation nav = NavigationManager.get(context);
-        nav.registerRoutesObserver(routesObserver);
-        nav.registerRouteProgressObserver(routeProgressObserver);
-        nav.registerLocationObserver(locationObserver);
+    @VisibleForTesting
+    boolean hasRegisteredObservers() {
+        return observersRegistered;
+    }
+
+    @VisibleForTesting
+    boolean isDestroyed() {
+        return destroyed;
     }
 
     public MapView getMapView() {
@@ -194,9 +276,171 @@ public class MapboxNavigationView extends FrameLayout {
     }
 
     public void setStyle(String styleUri) {
-        if (mapView != null) {
-            mapView.getMapboxMap().loadStyleUri(styleUri);
+        if (mapView != null && !styleUri.equals(currentStyleUri)) {
+            currentStyleUri = styleUri;
+            mapView.getMapboxMap().loadStyleUri(styleUri, this::onStyleLoaded);
+        }
+    }
+
+    /**
+     * @param mode "full", "lite" or "auto" (device class, then thermal status)
+     */
+    public void setRenderMode(String mode) {
+        renderMode = mode != null ? mode : "auto";
+        if ("lite".equals(renderMode)) {
+            applyProfile(RenderProfile.LITE);
+        } else if ("full".equals(renderMode)) {
+            applyProfile(RenderProfile.FULL);
+        } else {
+            applyProfile(RenderProfile.detect(getContext()));
+        }
+        updateThermalMonitoring(isAttachedToWindow());
+    }
+
+    public RenderProfile getRenderProfile() {
+        return profile;
+    }
+
+    private void applyProfile(RenderProfile next) {
+        if (next == profile || destroyed)
+            return;
+        android.util.Log.i("MapboxNavView", "Render profile " + profile + " -> " + next);
+        RenderProfile previous = profile;
+        profile = next;
+
+        mapView.setMaximumFps(maxFpsFor(next));
+        viewportDataSource.followingPitchPropertyOverride(next.slowPitch);
+        viewportDataSource.evaluate();
+
+        if (previous.reduced != next.reduced) {
+            routeLineApi.cancel();
+            routeLineView.cancel();
+            buildRouteLine(next);
+            // A style still loading picks the new profile up in onStyleLoaded,
+            // which also redraws the route on the new line api
+            Style style = mapView.getMapboxMap().getStyle();
+            if (style != null && next.reduced) {
+                onStyleLoaded(style);
+            } else if (style != null) {
+                // Hidden layers only come back with a style reload
+                mapView.getMapboxMap().loadStyleUri(currentStyleUri, this::onStyleLoaded);
+            }
+        }
+    }
+
+    private void buildRouteLine(RenderProfile target) {
+        MapboxRouteLineApiOptions.Builder apiOptions = new MapboxRouteLineApiOptions.Builder();
+        MapboxRouteLineViewOptions.Builder viewOptions = new MapboxRouteLineViewOptions.Builder(getContext());
+        if (target.reduced) {
+            apiOptions.calculateRestrictedRoadSections(false);
+            viewOptions.displayRestrictedRoadSections(false)
+                    .displaySoftGradientForTraffic(false)
+                    // Coarser line simplification, fewer vertices per frame
+                    .tolerance(1.0);
+        }
+        routeLineApi = new MapboxRouteLineApi(apiOptions.build());
+        routeLineView = new MapboxRouteLineView(viewOptions.build());
+    }
+
+    private void onStyleLoaded(Style style) {
+        if (profile.reduced) {
+            for (StyleObjectInfo layer : style.getStyleLayers()) {
+                if (isLiteHiddenLayer(layer.getId())) {
+                    style.setStyleLayerProperty(layer.getId(), "visibility", new Value("none"));
+                }
+            }
+        }
+        configurePuck();
+        // A new style has no route layers; draw against this one, not the
+        // style that was replaced
+        if (!currentRoutes.isEmpty()) {
+            drawRouteLine(currentRoutes);
+        }
+        if (observersRegistered) {
+            // Prefetch follows the style on screen
+            PredictiveTileCache.get().attachMap(mapView.getMapboxMap(), currentStyleUri);
+        }
+    }
+
+    private static boolean isLiteHiddenLayer(String layerId) {
+        for (String prefix : LITE_HIDDEN_LAYER_PREFIXES) {
+            if (layerId.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    private void configurePuck() {
+        // ✅ IMPLEMENTAÇÃO OFICIAL V11
+        LocationComponentPlugin locationPlugin = (LocationComponentPlugin) mapView
+                .getPlugin(MAPBOX_LOCATION_COMPONENT_PLUGIN_ID);
+        if (locationPlugin == null)
+            return;
+
+        locationPlugin.setLocationProvider(locationProvider);
+        locationPlugin.setEnabled(true);
+        locationPlugin.setPuckBearingEnabled(true);
+        // Lite: static car icon, no pulse or accuracy ring animating every frame
+        locationPlugin.setPulsingEnabled(!profile.reduced);
+        locationPlugin.setShowAccuracyRing(!profile.reduced);
+
+        LocationPuck2D puck = new LocationPuck2D(
+                null, // topImage
+                ImageHolder.from(R.drawable.ic_car), // bearingImage
+                null, // shadowImage
+                null, // scaleExpression
+                1.0f // opacity
+        );
+        locationPlugin.setLocationPuck(puck);
+    }
+
+    private int maxFpsFor(RenderProfile target) {
+        if (target.maxFps > 0)
+            return target.maxFps;
+        Display display = getDisplay();
+        return display != null ? Math.round(display.getRefreshRate()) : 60;
+    }
+
+    private void updateThermalMonitoring(boolean attached) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q)
+            return;
+        if ("auto".equals(renderMode) && attached) {
+            startThermalMonitoring();
+        } else {
+            stopThermalMonitoring();
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void startThermalMonitoring() {
+        if (thermalListener != null)
+            return;
+        PowerManager powerManager = (PowerManager) getContext().getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null)
+            return;
+        PowerManager.OnThermalStatusChangedListener listener = status -> {
+            if (!"auto".equals(renderMode))
+                return;
+            if (RenderProfile.isThrottlingStatus(status)) {
+                applyProfile(RenderProfile.LITE);
+            } else if (RenderProfile.isCoolStatus(status)) {
+                applyProfile(deviceProfile);
+            }
+        };
+        // Listener runs on the main thread
+        powerManager.addThermalStatusListener(listener);
+        thermalListener = listener;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void stopThermalMonitoring() {
+        if (thermalListener == null)
+            return;
+        PowerManager powerManager = (PowerManager) getContext().getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null) {
+            powerManager.removeThermalStatusListener((PowerManager.OnThermalStatusChangedListener) thermalListener);
         }
+        thermalListener = null;
     }
 
     public void recenter() {
@@ -227,13 +471,13 @@ public class MapboxNavigationView extends FrameLayout {
 
         if (speedKmh < 20) {
             zoom = 17.5;
-            pitch = 30.0;
+            pitch = profile.slowPitch;
         } else if (speedKmh < 50) {
             zoom = 16.5;
-            pitch = 45.0;
+            pitch = profile.mediumPitch;
         } else {
             zoom = 15.5;
-            pitch = 60.0;
+            pitch = profile.fastPitch;
         }
 
         // 🏁 FINAL AUDIT COMPLIANCE: Use direct property overrides as per verified doc
@@ -246,27 +490,71 @@ public class MapboxNavigationView extends FrameLayout {
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        if (destroyed)
+            return;
         mapView.onStart();
+        // The display (and its refresh rate) is only known once attached
+        mapView.setMaximumFps(maxFpsFor(profile));
+        updateThermalMonitoring(true);
+        registerObservers();
+        navigationCamera.requestNavigationCameraToFollowing();
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         mapView.onStop();
+        updateThermalMonitoring(false);
         // ❌ DO NOT call mapView.onDestroy() here - Maps SDK 11 requirement
-        // onDestroy() should only be called when Activity/Fragment dies, not on View
-        // detach
+        // Pooled views are detached and re-attached; onDestroy() only runs
+        // from destroy() once the view leaves the pool for good
+        releaseObservers();
+    }
+
+    /**
+     * Final teardown, called by MapboxNavigationViewPool when the view is not
+     * kept for reuse. The view can't be attached again afterwards.
+     */
+    public void destroy() {
+        if (destroyed)
+            return;
+        destroyed = true;
+        releaseObservers();
+        mapView.onDestroy();
+        removeAllViews();
+    }
+
+    private void registerObservers() {
+        if (observersRegistered)
+            return;
+        observersRegistered = true;
+
+        // Registering replays the current routes/location, so a reused view
+        // redraws the active trip without waiting for the next update
+        NavigationEngine engine = NavigationEngines.get(getContext());
+        engine.registerRoutesListener(routesListener);
+        engine.registerProgressListener(progressListener);
+        engine.registerLocationListener(locationListener);
+        PredictiveTileCache.get().attachMap(mapView.getMapboxMap(), currentStyleUri);
+    }
+
+    private void releaseObservers() {
+        // Drop queued camera/puck updates so they don't hold the view past detach
+        mainHandler.removeCallbacksAndMessages(null);
 
         // Clean RouteLine resources
         routeLineApi.cancel();
         routeLineView.cancel();
 
+        if (!observersRegistered)
+            return;
+        observersRegistered = false;
+
         // Cleanup Observers to avoid leaks
-        MapboxNavigation nav = NavigationManager.get(getContext());
-        if (nav != null) {
-            nav.unregisterRoutesObserver(routesObserver);
-            nav.unregisterRouteProgressObserver(routeProgressObserver);
-            nav.unregisterLocationObserver(locationObserver);
-        }
+        NavigationEngine engine = NavigationEngines.get(getContext());
+        engine.unregisterRoutesListener(routesListener);
+        engine.unregisterProgressListener(progressListener);
+        engine.unregisterLocationListener(locationListener);
+        PredictiveTileCache.get().detachMap(mapView.getMapboxMap());
     }
 }
@@ -18,7 +18,13 @@ public class MapboxNavigationViewManager extends SimpleViewManager<MapboxNavigat
     @NonNull
     @Override
     protected MapboxNavigationView createViewInstance(@NonNull ThemedReactContext reactContext) {
-        return new MapboxNavigationView(reactContext);
+        return MapboxNavigationViewPool.acquire(reactContext);
+    }
+
+    @Override
+    public void onDropViewInstance(@NonNull MapboxNavigationView view) {
+        super.onDropViewInstance(view);
+        MapboxNavigationViewPool.release(view);
     }
 
     @ReactProp(name = "mapStyle")
@@ -27,4 +33,10 @@ public class MapboxNavigationViewManager extends SimpleViewManager<MapboxNavigat
             view.setStyle(styleUri);
         }
     }
+
+    // "auto" (default), "full" or "lite"
+    @ReactProp(name = "renderMode")
+    public void setRenderMode(MapboxNavigationView view, String mode) {
+        view.setRenderMode(mode);
+    }
 }
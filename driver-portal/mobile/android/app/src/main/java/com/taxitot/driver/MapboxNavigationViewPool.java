@@ -0,0 +1,142 @@
+package com.taxitot.driver;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.content.res.Configuration;
+import android.util.Log;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.UiThreadUtil;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded pool of fully initialised MapboxNavigationView instances.
+ * Each pooled view keeps its MapView (GL context, loaded style and tiles),
+ * route line and camera objects, so mounting the navigation layer again only
+ * re-parents an existing view instead of building a new map.
+ *
+ * Views are created around a MutableContextWrapper: while mounted it points
+ * to the ThemedReactContext, while idle it points back to the application
+ * context so the pool never retains an Activity.
+ *
+ * Views that are not kept are destroyed (MapView.onDestroy), and idle views
+ * are dropped when the system reports memory pressure.
+ *
+ * All methods must be called on the UI thread.
+ */
+public final class MapboxNavigationViewPool {
+
+    private static final String TAG = "MapboxNavViewPool";
+
+    // One idle map is enough for the dashboard flow; more only costs GL memory
+    private static final int MAX_IDLE_VIEWS = 1;
+
+    private static final ArrayDeque<MapboxNavigationView> idleViews = new ArrayDeque<>();
+
+    private static boolean trimCallbacksRegistered = false;
+
+    private MapboxNavigationViewPool() {
+    }
+
+    /**
+     * Returns a pooled view bound to the given context, or a new one when the
+     * pool is empty.
+     */
+    @NonNull
+    public static MapboxNavigationView acquire(@NonNull Context context) {
+        UiThreadUtil.assertOnUiThread();
+        registerTrimCallbacks(context);
+        MapboxNavigationView view = idleViews.pollFirst();
+        if (view == null) {
+            Log.i(TAG, "Pool empty, inflating new map view");
+            return new MapboxNavigationView(new MutableContextWrapper(context));
+        }
+        Log.i(TAG, "Reusing pooled map view");
+        rebind(view, context);
+        return view;
+    }
+
+    /**
+     * Hands a dropped view back to the pool. Views beyond the pool bound are
+     * destroyed.
+     */
+    public static void release(@NonNull MapboxNavigationView view) {
+        UiThreadUtil.assertOnUiThread();
+        if (view.getParent() instanceof ViewGroup) {
+            ((ViewGroup) view.getParent()).removeView(view);
+        }
+        rebind(view, view.getContext().getApplicationContext());
+        if (idleViews.contains(view)) {
+            return;
+        }
+        if (idleViews.size() >= MAX_IDLE_VIEWS) {
+            Log.i(TAG, "Pool full, destroying map view");
+            view.destroy();
+            return;
+        }
+        idleViews.addLast(view);
+    }
+
+    /**
+     * Inflates a view ahead of time so its style is already loaded when the
+     * navigation layer mounts.
+     */
+    public static void prewarm(@NonNull Context context) {
+        UiThreadUtil.assertOnUiThread();
+        if (!idleViews.isEmpty()) {
+            return;
+        }
+        registerTrimCallbacks(context);
+        Log.i(TAG, "Prewarming map view");
+        idleViews.addLast(new MapboxNavigationView(
+                new MutableContextWrapper(context.getApplicationContext())));
+    }
+
+    public static void clear() {
+        UiThreadUtil.assertOnUiThread();
+        MapboxNavigationView view;
+        while ((view = idleViews.pollFirst()) != null) {
+            view.destroy();
+        }
+    }
+
+    static int idleCount() {
+        return idleViews.size();
+    }
+
+    private static void registerTrimCallbacks(Context context) {
+        if (trimCallbacksRegistered) {
+            return;
+        }
+        trimCallbacksRegistered = true;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                    Log.w(TAG, "Memory pressure (" + level + "), clearing idle map views");
+                    UiThreadUtil.runOnUiThread(MapboxNavigationViewPool::clear);
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                UiThreadUtil.runOnUiThread(MapboxNavigationViewPool::clear);
+            }
+        });
+    }
+
+    private static void rebind(MapboxNavigationView view, Context context) {
+        Context current = view.getContext();
+        if (current instanceof MutableContextWrapper) {
+            ((MutableContextWrapper) current).setBaseContext(context);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.taxitot.driver;
+
+import java.util.List;
+
+/**
+ * Narrow view of the turn-by-turn SDK used by the session logic: route
+ * requests, trip session control and observer registration.
+ *
+ * MapboxNavigationEngine is the production implementation; FakeNavigationEngine
+ * returns deterministic routes and synthetic progress so NavigationSession can
+ * run (and be measured) on a plain JVM.
+ *
+ * Threading: every method must be called on the engine thread (see
+ * runOnEngineThread) and listeners are invoked there. For Mapbox that is the
+ * main looper.
+ *
+ * Value types carry an optional nativeValue (NavigationRoute, RouteProgress,
+ * LocationMatcherResult...) for Mapbox-only consumers such as the map view;
+ * it is null for the fake engine.
+ */
+public interface NavigationEngine {
+
+    long NO_REQUEST = -1L;
+
+    final class Waypoint {
+        public final double lat;
+        public final double lng;
+
+        public Waypoint(double lat, double lng) {
+            this.lat = lat;
+            this.lng = lng;
+        }
+    }
+
+    final class RouteInfo {
+        public final String id;
+        public final double distanceMeters;
+        public final double durationSeconds;
+        public final Object nativeValue;
+
+        public RouteInfo(String id, double distanceMeters, double durationSeconds, Object nativeValue) {
+            this.id = id;
+            this.distanceMeters = distanceMeters;
+            this.durationSeconds = durationSeconds;
+            this.nativeValue = nativeValue;
+        }
+    }
+
+    final class ProgressInfo {
+        public final double distanceRemaining;
+        public final double durationRemaining;
+        public final double distanceTraveled;
+        public final double stepDistanceRemaining;
+        public final double stepDurationRemaining;
+        public final Object nativeValue;
+
+        public ProgressInfo(double distanceRemaining, double durationRemaining, double distanceTraveled,
+                double stepDistanceRemaining, double stepDurationRemaining, Object nativeValue) {
+            this.distanceRemaining = distanceRemaining;
+            this.durationRemaining = durationRemaining;
+            this.distanceTraveled = distanceTraveled;
+            this.stepDistanceRemaining = stepDistanceRemaining;
+            this.stepDurationRemaining = stepDurationRemaining;
+            this.nativeValue = nativeValue;
+        }
+    }
+
+    final class LocationFix {
+        public final double lat;
+        public final double lng;
+        public final Double speedMps;
+        public final Object nativeValue;
+
+        public LocationFix(double lat, double lng, Double speedMps, Object nativeValue) {
+            this.lat = lat;
+            this.lng = lng;
+            this.speedMps = speedMps;
+            this.nativeValue = nativeValue;
+        }
+    }
+
+    interface RouteCallback {
+        void onRoutesReady(List<RouteInfo> routes);
+
+        void onFailure(String message);
+    }
+
+    /** Why the active routes changed; REFRESH keeps geometry and updates traffic annotations. */
+    enum RoutesChangeReason {
+        NEW,
+        REROUTE,
+        REFRESH,
+        ALTERNATIVE,
+        CLEAN_UP
+    }
+
+    interface RoutesListener {
+        void onRoutesChanged(List<RouteInfo> routes, RoutesChangeReason reason);
+    }
+
+    interface ProgressListener {
+        void onProgress(ProgressInfo progress);
+    }
+
+    interface LocationListener {
+        void onLocation(LocationFix fix);
+    }
+
+    interface ArrivalListener {
+        void onFinalDestinationArrival();
+
+        void onWaypointArrival();
+    }
+
+    interface VoiceListener {
+        void onVoiceInstruction(String announcement, Object nativeValue);
+    }
+
+    void runOnEngineThread(Runnable action);
+
+    /** @return request id usable with cancelRouteRequest */
+    long requestRoutes(List<Waypoint> coordinates, RouteCallback callback);
+
+    void cancelRouteRequest(long requestId);
+
+    void setRoutes(List<RouteInfo> routes);
+
+    /**
+     * Period of the background refresh of the active routes' traffic data
+     * (reported with RoutesChangeReason.REFRESH).
+     *
+     * @return false if the running engine keeps its current interval and the
+     *         new one only applies to the next engine instance
+     */
+    boolean setRouteRefreshInterval(long intervalMs);
+
+    /**
+     * Serialized route for on-disk snapshots (NavigationSnapshotStore).
+     * Pure function of the route: may be called from any thread.
+     *
+     * @return null if the route can't be serialized
+     */
+    String serializeRoute(RouteInfo route);
+
+    /**
+     * Inverse of serializeRoute, offline. May be called from any thread.
+     *
+     * @return null if the data can't be restored
+     */
+    RouteInfo deserializeRoute(String serialized);
+
+    /**
+     * Route polyline, for consumers that work along the route (e.g.
+     * PredictiveTileCache). Pure function of the route: any thread.
+     *
+     * @return empty if the route has no geometry
+     */
+    List<Waypoint> routeGeometry(RouteInfo route);
+
+    void startTripSession();
+
+    void stopTripSession();
+
+    void registerRoutesListener(RoutesListener listener);
+
+    void unregisterRoutesListener(RoutesListener listener);
+
+    void registerProgressListener(ProgressListener listener);
+
+    void unregisterProgressListener(ProgressListener listener);
+
+    void registerLocationListener(LocationListener listener);
+
+    void unregisterLocationListener(LocationListener listener);
+
+    void registerArrivalListener(ArrivalListener listener);
+
+    void unregisterArrivalListener(ArrivalListener listener);
+
+    void registerVoiceListener(VoiceListener listener);
+
+    void unregisterVoiceListener(VoiceListener listener);
+}
@@ -0,0 +1,25 @@
+package com.taxitot.driver;
+
+import android.content.Context;
+
+/**
+ * Resolves the NavigationEngine used by the module and the map view.
+ * Defaults to the Mapbox SDK; an override (e.g. FakeNavigationEngine) can be
+ * installed for benchmarks or simulated drives.
+ */
+public final class NavigationEngines {
+
+    private static NavigationEngine override;
+
+    private NavigationEngines() {
+    }
+
+    public static synchronized NavigationEngine get(Context context) {
+        return override != null ? override : MapboxNavigationEngine.get(context);
+    }
+
+    /** Pass null to go back to the Mapbox engine. */
+    public static synchronized void setOverride(NavigationEngine engine) {
+        override = engine;
+    }
+}
@@ -1,22 +1,60 @@
 package com.taxitot.driver;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import com.mapbox.navigation.core.MapboxNavigation;
 import com.mapbox.navigation.core.MapboxNavigationProvider;
 import com.mapbox.navigation.base.options.NavigationOptions;
+import com.mapbox.navigation.base.route.RouteRefreshOptions;
 
 public class NavigationManager {
 
+    // The SDK rejects refresh intervals below 30s
+    public static final long MIN_ROUTE_REFRESH_INTERVAL_MS = 30_000;
+    public static final long DEFAULT_ROUTE_REFRESH_INTERVAL_MS = 60_000;
+
+    private static final String PREFS = "navigation_manager";
+    private static final String KEY_ROUTE_REFRESH_INTERVAL = "route_refresh_interval_ms";
+
     private static MapboxNavigation instance;
 
     public static synchronized MapboxNavigation get(Context context) {
         if (instance == null) {
+            // Refresh re-fetches traffic annotations (duration, congestion)
+            // for the active route in place instead of a new route request
+            RouteRefreshOptions refreshOptions = new RouteRefreshOptions.Builder()
+                    .intervalMillis(routeRefreshInterval(context))
+                    .build();
             instance = MapboxNavigationProvider.create(
-                    new NavigationOptions.Builder(context.getApplicationContext()).build());
+                    new NavigationOptions.Builder(context.getApplicationContext())
+                            .routeRefreshOptions(refreshOptions)
+                            .build());
         }
         return instance;
     }
 
+    /**
+     * Interval of the in-place route refresh. Part of NavigationOptions, so it
+     * applies when the instance is created; it is persisted so that happens
+     * on the next app start at the latest.
+     *
+     * @return false if the current instance keeps its interval until recreated
+     */
+    public static synchronized boolean setRouteRefreshInterval(Context context, long intervalMs) {
+        prefs(context).edit()
+                .putLong(KEY_ROUTE_REFRESH_INTERVAL, Math.max(MIN_ROUTE_REFRESH_INTERVAL_MS, intervalMs))
+                .apply();
+        return instance == null;
+    }
+
+    static long routeRefreshInterval(Context context) {
+        return prefs(context).getLong(KEY_ROUTE_REFRESH_INTERVAL, DEFAULT_ROUTE_REFRESH_INTERVAL_MS);
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
     public static synchronized void destroy() {
         if (instance != null) {
             MapboxNavigationProvider.destroy();
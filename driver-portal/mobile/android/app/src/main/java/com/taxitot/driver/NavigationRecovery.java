@@ -0,0 +1,165 @@
+package com.taxitot.driver;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resumes navigation from NavigationSnapshotStore after the process was
+ * killed mid-trip.
+ *
+ * Triggered by whichever comes first: MapboxNavigationService being
+ * restarted by START_STICKY, or MapboxNavigationModule coming up. The routes
+ * are deserialized off the main thread and handed straight to the engine
+ * (trip session started, routes set), so no Directions request or fresh GPS
+ * wait is needed. The module then adopts the running session once
+ * (NavigationSession.adopt).
+ *
+ * Timings are kept in the Result: snapshot load/deserialize time and time
+ * from process start to routes set.
+ */
+public final class NavigationRecovery {
+
+    private static final String TAG = "NavRecovery";
+
+    // Older snapshots are from a trip the driver has long finished or abandoned
+    static final long MAX_SNAPSHOT_AGE_MS = 2 * 60 * 60 * 1000;
+
+    private static NavigationRecovery instance;
+
+    public interface Callback {
+        /** Called on the engine thread; result is null when there was nothing to recover. */
+        void onRecoveryDone(Result result);
+    }
+
+    public static final class Result {
+        public final NavigationSnapshotStore.Snapshot snapshot;
+        /** Reading and deserializing the snapshot. */
+        public final long loadMs;
+        /** Process start to routes set on the engine. */
+        public final long recoveryMs;
+        public final long snapshotAgeMs;
+        /** What triggered recovery: "service" or "module". */
+        public final String trigger;
+
+        Result(NavigationSnapshotStore.Snapshot snapshot, long loadMs, long recoveryMs, long snapshotAgeMs,
+                String trigger) {
+            this.snapshot = snapshot;
+            this.loadMs = loadMs;
+            this.recoveryMs = recoveryMs;
+            this.snapshotAgeMs = snapshotAgeMs;
+            this.trigger = trigger;
+        }
+    }
+
+    private enum Phase {
+        NOT_STARTED, LOADING, DONE
+    }
+
+    private final NavigationEngine engine;
+    private final NavigationSnapshotStore store;
+
+    // Guarded by this
+    private Phase phase = Phase.NOT_STARTED;
+    private Result result;
+    private boolean claimed;
+    private final List<Callback> waiting = new ArrayList<>();
+
+    public static synchronized NavigationRecovery get(Context context) {
+        if (instance == null) {
+            instance = new NavigationRecovery(NavigationEngines.get(context),
+                    NavigationSnapshotStore.get(context));
+        }
+        return instance;
+    }
+
+    private NavigationRecovery(NavigationEngine engine, NavigationSnapshotStore store) {
+        this.engine = engine;
+        this.store = store;
+    }
+
+    /** Starts recovery if it hasn't run in this process yet. */
+    public void resume(String trigger) {
+        synchronized (this) {
+            if (phase != Phase.NOT_STARTED)
+                return;
+            phase = Phase.LOADING;
+        }
+        store.execute(() -> {
+            long started = SystemClock.elapsedRealtime();
+            NavigationSnapshotStore.Snapshot snapshot = store.load();
+            long loadMs = SystemClock.elapsedRealtime() - started;
+            long ageMs = snapshot != null ? System.currentTimeMillis() - snapshot.savedAtMs : 0;
+
+            if (snapshot != null && ageMs > MAX_SNAPSHOT_AGE_MS) {
+                Log.i(TAG, "Snapshot for " + snapshot.key + " is " + ageMs / 60_000 + " min old, dropping");
+                store.clear();
+                snapshot = null;
+            }
+            if (snapshot == null) {
+                engine.runOnEngineThread(() -> finish(null));
+                return;
+            }
+
+            NavigationSnapshotStore.Snapshot restored = snapshot;
+            engine.runOnEngineThread(() -> {
+                engine.startTripSession();
+                engine.setRoutes(restored.routes);
+                long recoveryMs = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+                Log.i(TAG, "Recovered " + restored.key + " via " + trigger + ": load " + loadMs
+                        + "ms, process start to navigating " + recoveryMs + "ms, snapshot age "
+                        + ageMs / 1000 + "s");
+                finish(new Result(restored, loadMs, recoveryMs, ageMs, trigger));
+            });
+        });
+    }
+
+    /**
+     * Hands the recovered trip to the first caller, once (the module adopts it
+     * into its NavigationSession). Later callers and calls without anything
+     * to recover get null. Triggers recovery if needed.
+     */
+    public void claim(Callback callback) {
+        boolean deliverNow;
+        synchronized (this) {
+            deliverNow = phase == Phase.DONE;
+            if (!deliverNow) {
+                waiting.add(callback);
+            }
+        }
+        if (deliverNow) {
+            engine.runOnEngineThread(() -> callback.onRecoveryDone(takeResult()));
+        } else {
+            resume("module");
+        }
+    }
+
+    /** Timings of this process's recovery, or null if nothing was recovered. */
+    public synchronized Result lastResult() {
+        return result;
+    }
+
+    private void finish(Result recovered) {
+        List<Callback> callbacks;
+        synchronized (this) {
+            phase = Phase.DONE;
+            result = recovered;
+            callbacks = new ArrayList<>(waiting);
+            waiting.clear();
+        }
+        for (Callback callback : callbacks) {
+            callback.onRecoveryDone(takeResult());
+        }
+    }
+
+    private synchronized Result takeResult() {
+        if (result == null || claimed)
+            return null;
+        claimed = true;
+        return result;
+    }
+}
@@ -0,0 +1,388 @@
+package com.taxitot.driver;
+
+import android.util.Log;
+
+import com.taxitot.driver.NavigationEngine.LocationFix;
+import com.taxitot.driver.NavigationEngine.RouteInfo;
+import com.taxitot.driver.NavigationEngine.Waypoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trip session state machine (see NavigationSessionState).
+ *
+ * Every state change runs on one dedicated executor, so JS calls, GPS fixes
+ * and Directions callbacks are applied in order without locks. Only the
+ * NavigationEngine calls hop to the engine thread (the main looper for
+ * Mapbox), and their results are posted back to the executor.
+ *
+ * Sessions are keyed by tripId:phase (see MapboxNavigationModule); starting
+ * the active key again is a no-op and a phase change on the same trip only
+ * replaces the route. Superseded route requests are cancelled by id.
+ *
+ * An adopted session (restored after process death) is provisional: it is
+ * stopped unless start() confirms its key within the grace period, so a trip
+ * that ended while the process was dead doesn't keep navigating.
+ *
+ * Depends only on NavigationEngine, so it runs on a plain JVM with
+ * FakeNavigationEngine.
+ */
+public class NavigationSession {
+
+    private static final String TAG = "NavSession";
+
+    public interface Listener {
+        /** Called on the session executor after every transition. */
+        void onStateChanged(NavigationSessionState from, NavigationSessionState to, long elapsedInPreviousMs);
+
+        /** Called on the session executor when the route for the current leg fails. */
+        void onRouteError(String message);
+
+        /** Called on the session executor once routes for a leg are set on the engine. */
+        void onLegReady(String key, Waypoint destination, List<RouteInfo> routes);
+
+        /** Called on the engine thread once the trip session has started. */
+        void onSessionStarted(NavigationEngine engine);
+
+        /** Called on the engine thread right before the trip session stops. */
+        void onSessionStopping(NavigationEngine engine);
+
+        /**
+         * Called on the session executor after an adopted session was stopped
+         * without being confirmed (grace period over, or discardAdopted()).
+         */
+        void onAdoptionDiscarded(String key);
+    }
+
+    private final NavigationEngine engine;
+    private final Listener listener;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "nav-session");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Confined to the executor
+    private NavigationSessionState state = NavigationSessionState.IDLE;
+    private long stateEnteredAtNanos = System.nanoTime();
+    private String sessionKey;
+    private Waypoint destination;
+    private long routeRequestId = NavigationEngine.NO_REQUEST;
+    private NavigationEngine.LocationListener firstFixListener;
+    // Set while an adopted session waits for start() with its key
+    private ScheduledFuture<?> adoptionExpiry;
+
+    // Bumped on the executor whenever the current leg is superseded; engine
+    // thread callbacks compare against it to drop stale results
+    private volatile long legGeneration = 0;
+    private volatile NavigationSessionState publishedState = NavigationSessionState.IDLE;
+
+    private final NavigationEngine.ArrivalListener arrivalListener = new NavigationEngine.ArrivalListener() {
+        @Override
+        public void onFinalDestinationArrival() {
+            long generation = legGeneration;
+            executor.execute(() -> {
+                if (generation == legGeneration && state == NavigationSessionState.NAVIGATING) {
+                    transition(NavigationSessionState.ARRIVED);
+                }
+            });
+        }
+
+        @Override
+        public void onWaypointArrival() {
+        }
+    };
+
+    public NavigationSession(NavigationEngine engine, Listener listener) {
+        this.engine = engine;
+        this.listener = listener;
+    }
+
+    public NavigationSessionState getState() {
+        return publishedState;
+    }
+
+    /**
+     * Starts (or re-targets) the session.
+     *
+     * @param key    tripId:phase, or null to always restart
+     * @param origin fixed origin, or null to route from the first GPS fix
+     */
+    public void start(String key, Waypoint destination, Waypoint origin) {
+        executor.execute(() -> {
+            // Any start settles an adopted session: same key confirms it,
+            // anything else replaces it below
+            boolean confirmsAdoption = clearAdoption();
+            if (key != null && key.equals(sessionKey) && state != NavigationSessionState.IDLE
+                    && state != NavigationSessionState.ROUTE_FAILED) {
+                // Re-render or restore_ride for the leg we're already on
+                Log.i(TAG, "Session " + key + (confirmsAdoption ? " confirmed" : " already active, ignoring"));
+                return;
+            }
+
+            if (key != null && sessionKey != null && state != NavigationSessionState.IDLE
+                    && sameTrip(key, sessionKey)) {
+                // Same trip, next phase (or a retry of a failed leg): keep
+                // trip session and observers, only replace the route
+                Log.i(TAG, (key.equals(sessionKey) ? "Retrying " : "Phase change " + sessionKey + " -> ") + key);
+                supersedeLeg();
+                sessionKey = key;
+                this.destination = destination;
+                beginLeg(origin);
+                return;
+            }
+
+            if (state != NavigationSessionState.IDLE) {
+                stopOnExecutor();
+            }
+
+            sessionKey = key;
+            this.destination = destination;
+            engine.runOnEngineThread(() -> {
+                engine.startTripSession();
+                engine.registerArrivalListener(arrivalListener);
+                listener.onSessionStarted(engine);
+                Log.i(TAG, "Trip session started");
+            });
+            beginLeg(origin);
+        });
+    }
+
+    /**
+     * Takes over a trip session the engine is already running with the given
+     * routes (restored by NavigationRecovery): no route request, straight to
+     * NAVIGATING. Ignored if a session is already active.
+     *
+     * The session is stopped (and onAdoptionDiscarded called) unless start()
+     * with the same key arrives within confirmWithinMs.
+     */
+    public void adopt(String key, Waypoint destination, long confirmWithinMs) {
+        executor.execute(() -> {
+            if (state != NavigationSessionState.IDLE) {
+                Log.i(TAG, "Session already active, not adopting " + key);
+                return;
+            }
+            sessionKey = key;
+            this.destination = destination;
+            engine.runOnEngineThread(() -> {
+                engine.registerArrivalListener(arrivalListener);
+                listener.onSessionStarted(engine);
+                Log.i(TAG, "Adopted restored trip session " + key);
+            });
+            transition(NavigationSessionState.NAVIGATING);
+            adoptionExpiry = executor.schedule(() -> {
+                Log.w(TAG, "Adopted session " + key + " not confirmed within " + confirmWithinMs + "ms");
+                discardAdoptedOnExecutor();
+            }, confirmWithinMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Stops an adopted session that start() hasn't confirmed yet, e.g. when
+     * the app knows the trip is over. No-op for any other session.
+     */
+    public void discardAdopted() {
+        executor.execute(this::discardAdoptedOnExecutor);
+    }
+
+    public void stop() {
+        executor.execute(this::stopOnExecutor);
+    }
+
+    public void shutdown() {
+        shutdown(() -> {
+        });
+    }
+
+    /**
+     * Stops the session and releases the executor. onStopped runs on the
+     * engine thread once the trip session has stopped and its listeners are
+     * unregistered, so it may tear the engine down.
+     */
+    public synchronized void shutdown(Runnable onStopped) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        executor.execute(() -> {
+            stopOnExecutor();
+            // Queued behind the engine-thread half of the stop
+            engine.runOnEngineThread(onStopped);
+        });
+        executor.shutdown();
+    }
+
+    private void discardAdoptedOnExecutor() {
+        if (adoptionExpiry == null) {
+            return;
+        }
+        String key = sessionKey;
+        stopOnExecutor();
+        listener.onAdoptionDiscarded(key);
+    }
+
+    /** Returns whether an adopted session was still waiting for confirmation. */
+    private boolean clearAdoption() {
+        if (adoptionExpiry == null) {
+            return false;
+        }
+        adoptionExpiry.cancel(false);
+        adoptionExpiry = null;
+        return true;
+    }
+
+    private void stopOnExecutor() {
+        clearAdoption();
+        if (state == NavigationSessionState.IDLE) {
+            return;
+        }
+        supersedeLeg();
+        sessionKey = null;
+        destination = null;
+        engine.runOnEngineThread(() -> {
+            listener.onSessionStopping(engine);
+            engine.unregisterArrivalListener(arrivalListener);
+            engine.stopTripSession();
+        });
+        transition(NavigationSessionState.IDLE);
+    }
+
+    private void beginLeg(Waypoint origin) {
+        if (origin != null) {
+            requestRoute(origin);
+            return;
+        }
+        transition(NavigationSessionState.LOCATING);
+        long generation = legGeneration;
+        NavigationEngine.LocationListener fixListener = new NavigationEngine.LocationListener() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                engine.unregisterLocationListener(this);
+                executor.execute(() -> onFirstFix(generation, new Waypoint(fix.lat, fix.lng)));
+            }
+        };
+        firstFixListener = fixListener;
+        engine.runOnEngineThread(() -> engine.registerLocationListener(fixListener));
+    }
+
+    private void onFirstFix(long generation, Waypoint fix) {
+        if (generation != legGeneration || state != NavigationSessionState.LOCATING) {
+            return;
+        }
+        firstFixListener = null;
+        Log.i(TAG, "First fix " + fix.lat + ", " + fix.lng);
+        requestRoute(fix);
+    }
+
+    private void requestRoute(Waypoint origin) {
+        transition(NavigationSessionState.ROUTING);
+
+        List<Waypoint> coordinates = new ArrayList<>();
+        coordinates.add(origin);
+        coordinates.add(destination);
+
+        long generation = legGeneration;
+        engine.runOnEngineThread(() -> {
+            if (generation != legGeneration) {
+                return;
+            }
+            long requestId = engine.requestRoutes(coordinates, new NavigationEngine.RouteCallback() {
+                @Override
+                public void onRoutesReady(List<RouteInfo> routes) {
+                    executor.execute(() -> NavigationSession.this.onRoutesReady(generation, routes));
+                }
+
+                @Override
+                public void onFailure(String message) {
+                    executor.execute(() -> onRouteFailure(generation, message));
+                }
+            });
+            executor.execute(() -> {
+                if (generation == legGeneration) {
+                    routeRequestId = requestId;
+                } else {
+                    // Superseded while the request was being issued
+                    engine.runOnEngineThread(() -> engine.cancelRouteRequest(requestId));
+                }
+            });
+        });
+    }
+
+    private void onRoutesReady(long generation, List<RouteInfo> routes) {
+        if (generation != legGeneration || state != NavigationSessionState.ROUTING) {
+            Log.i(TAG, "Stale routes for an old leg, ignoring");
+            return;
+        }
+        routeRequestId = NavigationEngine.NO_REQUEST;
+        engine.runOnEngineThread(() -> {
+            if (generation == legGeneration) {
+                engine.setRoutes(routes);
+            }
+        });
+        listener.onLegReady(sessionKey, destination, routes);
+        transition(NavigationSessionState.NAVIGATING);
+    }
+
+    private void onRouteFailure(long generation, String message) {
+        if (generation != legGeneration) {
+            return;
+        }
+        routeRequestId = NavigationEngine.NO_REQUEST;
+        Log.e(TAG, "Route request failed: " + message);
+        // Not stuck in ROUTING: starting the same key again retries
+        transition(NavigationSessionState.ROUTE_FAILED);
+        listener.onRouteError(message);
+    }
+
+    /**
+     * Invalidates the current leg: pending fix listener and in-flight route
+     * request are cancelled, late callbacks are ignored.
+     */
+    private void supersedeLeg() {
+        legGeneration++;
+        long requestId = routeRequestId;
+        routeRequestId = NavigationEngine.NO_REQUEST;
+        NavigationEngine.LocationListener pendingFix = firstFixListener;
+        firstFixListener = null;
+        if (requestId == NavigationEngine.NO_REQUEST && pendingFix == null) {
+            return;
+        }
+        engine.runOnEngineThread(() -> {
+            if (pendingFix != null) {
+                engine.unregisterLocationListener(pendingFix);
+            }
+            if (requestId != NavigationEngine.NO_REQUEST) {
+                Log.i(TAG, "Cancelling superseded route request " + requestId);
+                engine.cancelRouteRequest(requestId);
+            }
+        });
+    }
+
+    private void transition(NavigationSessionState next) {
+        NavigationSessionState previous = state;
+        if (previous == next) {
+            return;
+        }
+        long now = System.nanoTime();
+        long elapsedMs = (now - stateEnteredAtNanos) / 1_000_000;
+        state = next;
+        stateEnteredAtNanos = now;
+        publishedState = next;
+        Log.i(TAG, previous + " -> " + next + " after " + elapsedMs + "ms");
+        listener.onStateChanged(previous, next, elapsedMs);
+    }
+
+    private static boolean sameTrip(String keyA, String keyB) {
+        return Objects.equals(tripOf(keyA), tripOf(keyB));
+    }
+
+    private static String tripOf(String key) {
+        int separator = key.lastIndexOf(':');
+        return separator < 0 ? key : key.substring(0, separator);
+    }
+}
@@ -0,0 +1,23 @@
+package com.taxitot.driver;
+
+/**
+ * Lifecycle of a driver navigation session, driven by NavigationSession.
+ *
+ * IDLE -> LOCATING (waiting for first GPS fix) -> ROUTING (Directions request
+ * in flight) -> NAVIGATING -> ARRIVED. A failed Directions request goes to
+ * ROUTE_FAILED, which keeps the trip session and lets start() retry the same
+ * leg. A phase change on the same trip goes back to LOCATING; stop() always
+ * returns to IDLE.
+ */
+public enum NavigationSessionState {
+    IDLE,
+    LOCATING,
+    ROUTING,
+    ROUTE_FAILED,
+    NAVIGATING,
+    ARRIVED;
+
+    public String jsName() {
+        return name().toLowerCase(java.util.Locale.ROOT);
+    }
+}
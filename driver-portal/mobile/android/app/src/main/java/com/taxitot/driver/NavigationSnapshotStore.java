@@ -0,0 +1,249 @@
+package com.taxitot.driver;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.taxitot.driver.NavigationEngine.ProgressInfo;
+import com.taxitot.driver.NavigationEngine.RouteInfo;
+import com.taxitot.driver.NavigationEngine.Waypoint;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-disk snapshot of the active leg, used by NavigationRecovery to resume
+ * navigation after the process is killed.
+ *
+ * Two files in filesDir/nav_snapshot:
+ * - routes.json: serialized routes (NavigationEngine.serializeRoute), written
+ *   once per leg
+ * - session.json: trip key, destination and latest progress, small and
+ *   rewritten at most every PROGRESS_WRITE_INTERVAL_MS
+ *
+ * Callers never block: writes are queued on a single "nav-snapshot" thread
+ * and each file is replaced atomically (write temp, rename).
+ */
+public class NavigationSnapshotStore {
+
+    private static final String TAG = "NavSnapshot";
+
+    static final long PROGRESS_WRITE_INTERVAL_MS = 15_000;
+
+    private static NavigationSnapshotStore instance;
+
+    public static final class Snapshot {
+        public final String key;
+        public final Waypoint destination;
+        public final List<RouteInfo> routes;
+        public final double distanceRemaining;
+        public final double durationRemaining;
+        /** Wall clock time of the last write. */
+        public final long savedAtMs;
+
+        Snapshot(String key, Waypoint destination, List<RouteInfo> routes, double distanceRemaining,
+                double durationRemaining, long savedAtMs) {
+            this.key = key;
+            this.destination = destination;
+            this.routes = routes;
+            this.distanceRemaining = distanceRemaining;
+            this.durationRemaining = durationRemaining;
+            this.savedAtMs = savedAtMs;
+        }
+    }
+
+    private final File routesFile;
+    private final File sessionFile;
+    private final NavigationEngine engine;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "nav-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Leg being persisted; written by saveLeg/clear, read by progress writes
+    private volatile String legKey;
+    private volatile Waypoint legDestination;
+    private volatile long lastProgressWriteMs;
+
+    public static synchronized NavigationSnapshotStore get(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            instance = new NavigationSnapshotStore(new File(app.getFilesDir(), "nav_snapshot"),
+                    NavigationEngines.get(app));
+        }
+        return instance;
+    }
+
+    NavigationSnapshotStore(File directory, NavigationEngine engine) {
+        this.routesFile = new File(directory, "routes.json");
+        this.sessionFile = new File(directory, "session.json");
+        this.engine = engine;
+    }
+
+    /** Runs on the snapshot thread, after any queued writes. */
+    public void execute(Runnable task) {
+        writer.execute(task);
+    }
+
+    /** Persists a new leg: routes plus session header. */
+    public void saveLeg(String key, Waypoint destination, List<RouteInfo> routes) {
+        if (key == null || destination == null || routes.isEmpty())
+            return;
+        legKey = key;
+        legDestination = destination;
+        lastProgressWriteMs = System.currentTimeMillis();
+        List<RouteInfo> copy = new ArrayList<>(routes);
+        double distance = copy.get(0).distanceMeters;
+        double duration = copy.get(0).durationSeconds;
+        writer.execute(() -> {
+            long started = System.nanoTime();
+            try {
+                JSONArray serialized = new JSONArray();
+                for (RouteInfo route : copy) {
+                    String json = engine.serializeRoute(route);
+                    if (json == null)
+                        return;
+                    serialized.put(json);
+                }
+                JSONObject routesJson = new JSONObject()
+                        .put("key", key)
+                        .put("routes", serialized);
+                writeAtomically(routesFile, routesJson.toString());
+                writeSession(key, destination, distance, duration);
+                Log.i(TAG, "Saved leg " + key + " in " + (System.nanoTime() - started) / 1_000_000 + "ms");
+            } catch (JSONException | IOException e) {
+                Log.w(TAG, "Failed to save leg " + key, e);
+            }
+        });
+    }
+
+    /** Same leg, new routes (e.g. a local switch to an alternative). */
+    public void saveRoutes(List<RouteInfo> routes) {
+        saveLeg(legKey, legDestination, routes);
+    }
+
+    /**
+     * Records progress on the active leg. Cheap enough for every progress
+     * update; only writes once per PROGRESS_WRITE_INTERVAL_MS.
+     */
+    public void saveProgress(ProgressInfo progress) {
+        String key = legKey;
+        Waypoint destination = legDestination;
+        long now = System.currentTimeMillis();
+        if (key == null || now - lastProgressWriteMs < PROGRESS_WRITE_INTERVAL_MS)
+            return;
+        lastProgressWriteMs = now;
+        writer.execute(() -> {
+            // Leg may have changed or been cleared while queued
+            if (!key.equals(legKey))
+                return;
+            try {
+                writeSession(key, destination, progress.distanceRemaining, progress.durationRemaining);
+            } catch (JSONException | IOException e) {
+                Log.w(TAG, "Failed to save progress", e);
+            }
+        });
+    }
+
+    /** Drops the snapshot; the trip ended or was stopped. */
+    public void clear() {
+        legKey = null;
+        legDestination = null;
+        writer.execute(() -> {
+            sessionFile.delete();
+            routesFile.delete();
+        });
+    }
+
+    /**
+     * Reads and deserializes the snapshot. Blocking: call on the snapshot
+     * thread (execute) so it orders after pending writes.
+     *
+     * @return null if there is no complete snapshot
+     */
+    public Snapshot load() {
+        if (!sessionFile.exists() || !routesFile.exists())
+            return null;
+        try {
+            JSONObject session = new JSONObject(read(sessionFile));
+            JSONObject routesJson = new JSONObject(read(routesFile));
+            String key = session.getString("key");
+            if (!key.equals(routesJson.optString("key"))) {
+                // Crashed between the two writes of a new leg
+                Log.w(TAG, "Routes and session snapshot disagree, ignoring");
+                return null;
+            }
+
+            JSONArray serialized = routesJson.getJSONArray("routes");
+            List<RouteInfo> routes = new ArrayList<>(serialized.length());
+            for (int i = 0; i < serialized.length(); i++) {
+                RouteInfo route = engine.deserializeRoute(serialized.getString(i));
+                if (route == null)
+                    return null;
+                routes.add(route);
+            }
+            if (routes.isEmpty())
+                return null;
+
+            Waypoint destination = new Waypoint(session.getDouble("destLat"), session.getDouble("destLng"));
+            legKey = key;
+            legDestination = destination;
+            return new Snapshot(key, destination, routes, session.optDouble("distanceRemaining", 0),
+                    session.optDouble("durationRemaining", 0), session.optLong("savedAt", 0));
+        } catch (JSONException | IOException e) {
+            Log.w(TAG, "Unreadable snapshot", e);
+            return null;
+        }
+    }
+
+    private void writeSession(String key, Waypoint destination, double distanceRemaining,
+            double durationRemaining) throws JSONException, IOException {
+        JSONObject session = new JSONObject()
+                .put("key", key)
+                .put("destLat", destination.lat)
+                .put("destLng", destination.lng)
+                .put("distanceRemaining", distanceRemaining)
+                .put("durationRemaining", durationRemaining)
+                .put("savedAt", System.currentTimeMillis());
+        writeAtomically(sessionFile, session.toString());
+    }
+
+    private static void writeAtomically(File file, String content) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Can't create " + directory);
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file))
+            throw new IOException("Can't replace " + file);
+    }
+
+    private static String read(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < buffer.length) {
+                int read = in.read(buffer, offset, buffer.length - offset);
+                if (read < 0)
+                    break;
+                offset += read;
+            }
+            return new String(buffer, 0, offset, StandardCharsets.UTF_8);
+        }
+    }
+}
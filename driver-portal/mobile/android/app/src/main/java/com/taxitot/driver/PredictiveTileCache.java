@@ -0,0 +1,344 @@
+package com.taxitot.driver;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.mapbox.bindgen.Expected;
+import com.mapbox.common.Cancelable;
+import com.mapbox.common.NetworkRestriction;
+import com.mapbox.common.TileRegion;
+import com.mapbox.common.TileRegionError;
+import com.mapbox.common.TileRegionLoadOptions;
+import com.mapbox.common.TileRegionLoadProgress;
+import com.mapbox.common.TileStore;
+import com.mapbox.common.TilesetDescriptor;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.maps.MapboxMap;
+import com.mapbox.maps.OfflineManager;
+import com.mapbox.maps.RequestResourceType;
+import com.mapbox.maps.ResourceRequest;
+import com.mapbox.maps.ResponseSourceType;
+import com.mapbox.maps.TilesetDescriptorOptions;
+import com.mapbox.navigation.core.MapboxNavigation;
+import com.taxitot.driver.NavigationEngine.Waypoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prefetches map and routing tiles along the active route while a trip
+ * session runs, so the map and rerouting rarely wait on the network.
+ *
+ * The prefetched area is the route corridor (RouteCorridor) from the
+ * current position to lookAheadMeters ahead. It moves forward once half of
+ * it has been driven. Every window is loaded into the shared TileStore as
+ * one tile region. Loads are throttled to maxBytesPerSecond so they don't
+ * compete with on-demand tiles, and they stop once byteBudget is spent for
+ * the session.
+ *
+ * Hit rate comes from the attached map's resource requests: tiles served
+ * from the cache or the TileStore count as hits, network loads as misses.
+ *
+ * Routing tiles and their TileStore come from the session's engine, so only
+ * MapboxNavigationEngine prefetches; with other engines (FakeNavigationEngine)
+ * the hit rate is still tracked.
+ *
+ * Main thread only (the Mapbox engine thread).
+ */
+public class PredictiveTileCache {
+
+    private static final String TAG = "PredictiveTileCache";
+    private static final String REGION_ID = "predictive-corridor";
+
+    public static final class Options {
+        public final double corridorMeters;
+        public final double lookAheadMeters;
+        public final long byteBudget;
+        public final int maxBytesPerSecond;
+        public final int minZoom;
+        public final int maxZoom;
+
+        public Options(double corridorMeters, double lookAheadMeters, long byteBudget, int maxBytesPerSecond,
+                int minZoom, int maxZoom) {
+            this.corridorMeters = corridorMeters;
+            this.lookAheadMeters = lookAheadMeters;
+            this.byteBudget = byteBudget;
+            this.maxBytesPerSecond = maxBytesPerSecond;
+            this.minZoom = minZoom;
+            this.maxZoom = maxZoom;
+        }
+    }
+
+    // 300m each side, 5km ahead, 40MB per session at up to 128KB/s; zoom
+    // range of the following camera (see MapboxNavigationView.updateCameraBySpeed)
+    public static final Options DEFAULT_OPTIONS = new Options(300, 5000, 40L * 1024 * 1024, 128 * 1024, 13, 17);
+
+    public static final class Stats {
+        public final boolean running;
+        public final long prefetches;
+        public final long completedPrefetches;
+        public final long prefetchedBytes;
+        public final long byteBudget;
+        public final boolean budgetExhausted;
+        public final long tileRequests;
+        public final long cacheHits;
+        public final long tileStoreHits;
+
+        Stats(boolean running, long prefetches, long completedPrefetches, long prefetchedBytes, long byteBudget,
+                boolean budgetExhausted, long tileRequests, long cacheHits, long tileStoreHits) {
+            this.running = running;
+            this.prefetches = prefetches;
+            this.completedPrefetches = completedPrefetches;
+            this.prefetchedBytes = prefetchedBytes;
+            this.byteBudget = byteBudget;
+            this.budgetExhausted = budgetExhausted;
+            this.tileRequests = tileRequests;
+            this.cacheHits = cacheHits;
+            this.tileStoreHits = tileStoreHits;
+        }
+
+        /** Share of map tiles served without the network, 0 before any request. */
+        public double hitRate() {
+            return tileRequests > 0 ? (double) (cacheHits + tileStoreHits) / tileRequests : 0;
+        }
+    }
+
+    private static PredictiveTileCache instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private Options options = DEFAULT_OPTIONS;
+    private NavigationEngine engine;
+    // Set while a MapboxNavigationEngine session runs; null disables prefetch
+    private MapboxNavigation navigation;
+    private TileStore tileStore;
+    private List<Waypoint> geometry = Collections.emptyList();
+    // Distance traveled at which the next window is requested
+    private double nextPrefetchAtMeters;
+    private double lastTraveledMeters;
+    private Cancelable inFlight;
+    // Bumped per load so callbacks of a cancelled load are ignored
+    private long loadGeneration;
+    private long inFlightBytes;
+    private long sessionBytes;
+    private boolean budgetExhausted;
+
+    private MapboxMap map;
+    private String styleUri;
+    private Cancelable resourceSubscription;
+
+    private long prefetches;
+    private long completedPrefetches;
+    // Resource request callbacks may arrive off the main thread
+    private final AtomicLong tileRequests = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong tileStoreHits = new AtomicLong();
+
+    private final NavigationEngine.RoutesListener routesListener = (routes, reason) -> {
+        if (reason == NavigationEngine.RoutesChangeReason.REFRESH)
+            return;
+        cancelInFlight();
+        geometry = routes.isEmpty() ? Collections.<Waypoint>emptyList() : engine.routeGeometry(routes.get(0));
+        // New route starts at distance 0; the first progress triggers the window
+        nextPrefetchAtMeters = 0;
+    };
+
+    private final NavigationEngine.ProgressListener progressListener = progress -> {
+        lastTraveledMeters = progress.distanceTraveled;
+        if (lastTraveledMeters >= nextPrefetchAtMeters) {
+            prefetchAhead();
+        }
+    };
+
+    public static synchronized PredictiveTileCache get() {
+        if (instance == null) {
+            instance = new PredictiveTileCache();
+        }
+        return instance;
+    }
+
+    private PredictiveTileCache() {
+    }
+
+    public void setOptions(Options options) {
+        this.options = options;
+    }
+
+    public Options getOptions() {
+        return options;
+    }
+
+    /** Trip session started: follow the engine's routes; resets the budget and stats. */
+    public void start(NavigationEngine engine) {
+        stop();
+        this.engine = engine;
+        if (engine instanceof MapboxNavigationEngine) {
+            navigation = ((MapboxNavigationEngine) engine).navigation();
+            tileStore = navigatorTileStore(navigation);
+        }
+        sessionBytes = 0;
+        budgetExhausted = false;
+        prefetches = 0;
+        completedPrefetches = 0;
+        tileRequests.set(0);
+        cacheHits.set(0);
+        tileStoreHits.set(0);
+        engine.registerRoutesListener(routesListener);
+        engine.registerProgressListener(progressListener);
+    }
+
+    /** Trip session stopping: cancels the load and releases the corridor tiles for eviction. */
+    public void stop() {
+        if (engine == null)
+            return;
+        engine.unregisterRoutesListener(routesListener);
+        engine.unregisterProgressListener(progressListener);
+        engine = null;
+        cancelInFlight();
+        geometry = Collections.emptyList();
+        if (tileStore != null) {
+            tileStore.removeTileRegion(REGION_ID);
+        }
+        navigation = null;
+        tileStore = null;
+    }
+
+    /** Map whose tile requests feed the hit rate and whose style is prefetched. */
+    public void attachMap(MapboxMap map, String styleUri) {
+        this.styleUri = styleUri;
+        if (this.map == map)
+            return;
+        detachMap(this.map);
+        this.map = map;
+        resourceSubscription = map.subscribeResourceRequest(this::onResourceRequest);
+    }
+
+    public void detachMap(MapboxMap map) {
+        if (map == null || this.map != map)
+            return;
+        if (resourceSubscription != null) {
+            resourceSubscription.cancel();
+            resourceSubscription = null;
+        }
+        this.map = null;
+    }
+
+    public Stats snapshot() {
+        return new Stats(engine != null, prefetches, completedPrefetches,
+                sessionBytes + inFlightBytes, options.byteBudget, budgetExhausted, tileRequests.get(),
+                cacheHits.get(), tileStoreHits.get());
+    }
+
+    private void onResourceRequest(ResourceRequest request) {
+        if (engine == null || request.getCancelled() || request.getResponse() == null
+                || request.getRequest().getResource() != RequestResourceType.TILE)
+            return;
+        if (request.getResponse().getError() != null)
+            return;
+        tileRequests.incrementAndGet();
+        ResponseSourceType source = request.getResponse().getSource();
+        if (source == ResponseSourceType.TILE_STORE) {
+            tileStoreHits.incrementAndGet();
+        } else if (source != ResponseSourceType.NETWORK) {
+            cacheHits.incrementAndGet();
+        }
+    }
+
+    private void prefetchAhead() {
+        if (navigation == null || inFlight != null || budgetExhausted || geometry.size() < 2)
+            return;
+        Options current = options;
+        double from = lastTraveledMeters;
+        List<List<Waypoint>> rings = RouteCorridor.rings(geometry, from, current.lookAheadMeters,
+                current.corridorMeters);
+        // Next window once half of this one is behind us
+        nextPrefetchAtMeters = from + current.lookAheadMeters / 2;
+        if (rings.isEmpty())
+            return;
+
+        List<TilesetDescriptor> descriptors = new ArrayList<>(2);
+        if (styleUri != null) {
+            descriptors.add(new OfflineManager().createTilesetDescriptor(new TilesetDescriptorOptions.Builder()
+                    .styleURI(styleUri)
+                    .minZoom((byte) current.minZoom)
+                    .maxZoom((byte) current.maxZoom)
+                    .build()));
+        }
+        // Routing tiles, so reroutes along the corridor resolve offline
+        descriptors.add(navigation.getTilesetDescriptorFactory().getLatest());
+
+        TileRegionLoadOptions loadOptions = new TileRegionLoadOptions.Builder()
+                .geometry(toMultiPolygon(rings))
+                .descriptors(descriptors)
+                .acceptExpired(true)
+                .networkRestriction(NetworkRestriction.NONE)
+                .averageBytesPerSecond(current.maxBytesPerSecond)
+                .build();
+
+        prefetches++;
+        inFlightBytes = 0;
+        long generation = ++loadGeneration;
+        // Same region id: each window replaces the previous one, whose tiles
+        // stay cached until the TileStore needs the space
+        inFlight = tileStore.loadTileRegion(REGION_ID, loadOptions,
+                progress -> mainHandler.post(() -> onLoadProgress(generation, progress)),
+                result -> mainHandler.post(() -> onLoadFinished(generation, result)));
+    }
+
+    private void onLoadProgress(long generation, TileRegionLoadProgress progress) {
+        if (generation != loadGeneration || inFlight == null)
+            return;
+        inFlightBytes = progress.getLoadedResourceSize();
+        if (sessionBytes + inFlightBytes >= options.byteBudget) {
+            Log.w(TAG, "Prefetch budget exhausted after " + (sessionBytes + inFlightBytes) + " bytes");
+            budgetExhausted = true;
+            cancelInFlight();
+        }
+    }
+
+    private void onLoadFinished(long generation, Expected<TileRegionError, TileRegion> result) {
+        if (generation != loadGeneration || inFlight == null)
+            return;
+        inFlight = null;
+        sessionBytes += inFlightBytes;
+        inFlightBytes = 0;
+        if (result.isValue()) {
+            completedPrefetches++;
+        } else {
+            Log.w(TAG, "Prefetch failed: " + result.getError().getMessage());
+        }
+    }
+
+    private void cancelInFlight() {
+        if (inFlight == null)
+            return;
+        Cancelable cancelable = inFlight;
+        inFlight = null;
+        sessionBytes += inFlightBytes;
+        inFlightBytes = 0;
+        cancelable.cancel();
+    }
+
+    private static TileStore navigatorTileStore(MapboxNavigation navigation) {
+        TileStore configured = navigation.getNavigationOptions().getRoutingTilesOptions().getTileStore();
+        // Without one in RoutingTilesOptions the navigator, like the map,
+        // uses the default TileStore
+        return configured != null ? configured : TileStore.create();
+    }
+
+    private static MultiPolygon toMultiPolygon(List<List<Waypoint>> rings) {
+        List<List<List<Point>>> polygons = new ArrayList<>(rings.size());
+        for (List<Waypoint> ring : rings) {
+            List<Point> points = new ArrayList<>(ring.size());
+            for (Waypoint waypoint : ring) {
+                points.add(Point.fromLngLat(waypoint.lng, waypoint.lat));
+            }
+            polygons.add(Collections.singletonList(points));
+        }
+        return MultiPolygon.fromLngLats(polygons);
+    }
+}
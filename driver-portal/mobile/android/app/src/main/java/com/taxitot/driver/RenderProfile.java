@@ -0,0 +1,86 @@
+package com.taxitot.driver;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+
+/**
+ * Map rendering profile for MapboxNavigationView.
+ *
+ * FULL is the original look (uncapped FPS, tilted camera, full style, traffic
+ * gradients and alternatives). LITE keeps frame times steady on budget phones
+ * and during long shifts: 30 FPS cap, 2D camera, decorative style layers
+ * hidden, no puck animation and only the primary route line.
+ */
+public enum RenderProfile {
+
+    FULL(0, false, 30.0, 45.0, 60.0),
+    LITE(30, true, 0.0, 0.0, 0.0);
+
+    // Below this total RAM a phone is treated as low end
+    private static final long LOW_RAM_BYTES = 3L * 1024 * 1024 * 1024;
+    private static final int LOW_END_CORES = 4;
+
+    /** Render FPS cap, 0 = follow the display refresh rate. */
+    public final int maxFps;
+    /** Hide decorative style layers, simple puck, primary route line only. */
+    public final boolean reduced;
+    /** Camera pitch for < 20 km/h, < 50 km/h and faster. */
+    public final double slowPitch;
+    public final double mediumPitch;
+    public final double fastPitch;
+
+    RenderProfile(int maxFps, boolean reduced, double slowPitch, double mediumPitch, double fastPitch) {
+        this.maxFps = maxFps;
+        this.reduced = reduced;
+        this.slowPitch = slowPitch;
+        this.mediumPitch = mediumPitch;
+        this.fastPitch = fastPitch;
+    }
+
+    /**
+     * Picks a profile from the device class and, on Android 10+, the current
+     * thermal status.
+     */
+    public static RenderProfile detect(Context context) {
+        if (detectDeviceClass(context) == LITE)
+            return LITE;
+        return isThermalThrottling(context) ? LITE : FULL;
+    }
+
+    /**
+     * Device class only: the platform low-RAM flag, then total memory. Core
+     * count is a last resort when memory info is unavailable, since it says
+     * little about GPU or memory headroom.
+     */
+    public static RenderProfile detectDeviceClass(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null) {
+            if (activityManager.isLowRamDevice())
+                return LITE;
+            ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+            activityManager.getMemoryInfo(memoryInfo);
+            if (memoryInfo.totalMem > 0)
+                return memoryInfo.totalMem < LOW_RAM_BYTES ? LITE : FULL;
+        }
+        return Runtime.getRuntime().availableProcessors() <= LOW_END_CORES ? LITE : FULL;
+    }
+
+    static boolean isThermalThrottling(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q)
+            return false;
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return powerManager != null && isThrottlingStatus(powerManager.getCurrentThermalStatus());
+    }
+
+    static boolean isThrottlingStatus(int thermalStatus) {
+        // SEVERE is where the platform starts throttling noticeably
+        return thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE;
+    }
+
+    static boolean isCoolStatus(int thermalStatus) {
+        // Gap between LIGHT and SEVERE avoids flipping profiles back and forth
+        return thermalStatus <= PowerManager.THERMAL_STATUS_LIGHT;
+    }
+}
@@ -0,0 +1,105 @@
+package com.taxitot.driver;
+
+import com.taxitot.driver.NavigationEngine.Waypoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Area around a stretch of route, as rectangles around its segments, for
+ * PredictiveTileCache. Tile coverage is coarse, so short segments are merged
+ * into chords of about the corridor width and each rectangle is stretched by
+ * the half width at both ends to cover the joins.
+ */
+public final class RouteCorridor {
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    private RouteCorridor() {
+    }
+
+    /**
+     * @param geometry    route polyline
+     * @param fromMeters  start of the stretch, in meters along the route
+     * @param lengthMeters length of the stretch
+     * @param halfWidthMeters distance kept on each side of the route
+     * @return closed rings (5 points, first == last), empty if the stretch is past the end
+     */
+    public static List<List<Waypoint>> rings(List<Waypoint> geometry, double fromMeters, double lengthMeters,
+            double halfWidthMeters) {
+        List<Waypoint> stretch = slice(geometry, fromMeters, fromMeters + lengthMeters);
+        if (stretch.size() < 2)
+            return Collections.emptyList();
+
+        List<List<Waypoint>> rings = new ArrayList<>();
+        Waypoint chordStart = stretch.get(0);
+        double chordLength = 0;
+        for (int i = 1; i < stretch.size(); i++) {
+            chordLength += distance(stretch.get(i - 1), stretch.get(i));
+            boolean last = i == stretch.size() - 1;
+            if (chordLength >= halfWidthMeters * 2 || last) {
+                rings.add(rectangle(chordStart, stretch.get(i), halfWidthMeters));
+                chordStart = stretch.get(i);
+                chordLength = 0;
+            }
+        }
+        return rings;
+    }
+
+    /** Polyline between two distances along the route, cut at the exact points. */
+    static List<Waypoint> slice(List<Waypoint> geometry, double fromMeters, double toMeters) {
+        List<Waypoint> out = new ArrayList<>();
+        double traveled = 0;
+        for (int i = 1; i < geometry.size() && traveled < toMeters; i++) {
+            Waypoint a = geometry.get(i - 1);
+            Waypoint b = geometry.get(i);
+            double segment = distance(a, b);
+            double segmentEnd = traveled + segment;
+            if (segmentEnd > fromMeters && segment > 0) {
+                if (out.isEmpty()) {
+                    out.add(interpolate(a, b, Math.max(0, (fromMeters - traveled) / segment)));
+                }
+                out.add(interpolate(a, b, Math.min(1, (toMeters - traveled) / segment)));
+            }
+            traveled = segmentEnd;
+        }
+        return out;
+    }
+
+    private static List<Waypoint> rectangle(Waypoint a, Waypoint b, double halfWidth) {
+        // Local planar frame in meters around a
+        double cosLat = Math.cos(Math.toRadians(a.lat));
+        double dx = (b.lng - a.lng) * METERS_PER_DEGREE * cosLat;
+        double dy = (b.lat - a.lat) * METERS_PER_DEGREE;
+        double length = Math.hypot(dx, dy);
+        double ux = length > 0 ? dx / length : 1;
+        double uy = length > 0 ? dy / length : 0;
+        // Along (u) and across (n = u rotated 90 degrees), both halfWidth long
+        double ax = ux * halfWidth;
+        double ay = uy * halfWidth;
+        double nx = -ay;
+        double ny = ax;
+
+        List<Waypoint> ring = new ArrayList<>(5);
+        ring.add(offset(a, -ax + nx, -ay + ny, cosLat));
+        ring.add(offset(b, ax + nx, ay + ny, cosLat));
+        ring.add(offset(b, ax - nx, ay - ny, cosLat));
+        ring.add(offset(a, -ax - nx, -ay - ny, cosLat));
+        ring.add(ring.get(0));
+        return ring;
+    }
+
+    private static Waypoint offset(Waypoint origin, double eastMeters, double northMeters, double cosLat) {
+        return new Waypoint(origin.lat + northMeters / METERS_PER_DEGREE,
+                origin.lng + eastMeters / (METERS_PER_DEGREE * cosLat));
+    }
+
+    private static Waypoint interpolate(Waypoint a, Waypoint b, double t) {
+        return new Waypoint(a.lat + (b.lat - a.lat) * t, a.lng + (b.lng - a.lng) * t);
+    }
+
+    private static double distance(Waypoint a, Waypoint b) {
+        return TripScorer.haversineMeters(a.lat, a.lng, b.lat, b.lng);
+    }
+}
@@ -0,0 +1,306 @@
+package com.taxitot.driver;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ranks pending trips by approximate driving ETA from the driver to pickup.
+ *
+ * 1. Straight-line prefilter: everything is scored by haversine distance and
+ *    only the closest SHORTLIST_SIZE pickups within PREFILTER_RADIUS_M go on.
+ * 2. One Matrix API call (1 source x N pickups) for shortlisted pickups that
+ *    aren't cached.
+ * 3. Results are cached by (driver grid cell, pickup grid cell) for
+ *    CACHE_TTL_MS, so re-sorting the list as offers arrive is mostly free.
+ *
+ * Trips outside the shortlist, or when the Matrix call fails, get a
+ * straight-line estimate instead. All work runs on a background executor.
+ */
+public class TripScorer {
+
+    private static final String TAG = "TripScorer";
+
+    static final double PREFILTER_RADIUS_M = 15_000;
+    static final int SHORTLIST_SIZE = 10;
+    // ~550m at the equator; close enough that ETAs within a cell are interchangeable
+    static final double GRID_CELL_DEG = 0.005;
+    static final long CACHE_TTL_MS = 2 * 60 * 1000;
+    private static final int MAX_CACHE_ENTRIES = 512;
+
+    // Straight-line fallback: urban detour factor and average city speed
+    private static final double DETOUR_FACTOR = 1.35;
+    private static final double FALLBACK_SPEED_MPS = 25 / 3.6;
+
+    private static final String MATRIX_URL = "https://api.mapbox.com/directions-matrix/v1/mapbox/driving/";
+    private static final int TIMEOUT_MS = 8000;
+
+    public static final String SOURCE_MATRIX = "matrix";
+    public static final String SOURCE_CACHE = "cache";
+    public static final String SOURCE_ESTIMATE = "estimate";
+
+    public static final class Candidate {
+        public final String id;
+        public final double lat;
+        public final double lng;
+
+        public Candidate(String id, double lat, double lng) {
+            this.id = id;
+            this.lat = lat;
+            this.lng = lng;
+        }
+    }
+
+    public static final class Score {
+        public final String id;
+        public final double etaSeconds;
+        public final double distanceMeters;
+        public final double straightLineMeters;
+        public final String source;
+
+        Score(String id, double etaSeconds, double distanceMeters, double straightLineMeters, String source) {
+            this.id = id;
+            this.etaSeconds = etaSeconds;
+            this.distanceMeters = distanceMeters;
+            this.straightLineMeters = straightLineMeters;
+            this.source = source;
+        }
+    }
+
+    public interface Callback {
+        void onScored(List<Score> scores);
+
+        void onError(Exception error);
+    }
+
+    /** Driving durations/distances from one origin to many destinations. */
+    interface MatrixSource {
+        /** @return [0] durations in s, [1] distances in m; entries may be NaN */
+        double[][] fetch(double originLat, double originLng, List<Candidate> destinations) throws IOException;
+    }
+
+    private static final class CachedLeg {
+        final double durationS;
+        final double distanceM;
+        final long storedAtMs;
+
+        CachedLeg(double durationS, double distanceM, long storedAtMs) {
+            this.durationS = durationS;
+            this.distanceM = distanceM;
+            this.storedAtMs = storedAtMs;
+        }
+    }
+
+    private final MatrixSource matrixSource;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "trip-scorer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Access-ordered LRU; only touched from the executor
+    private final Map<String, CachedLeg> cache = new LinkedHashMap<String, CachedLeg>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedLeg> eldest) {
+            return size() > MAX_CACHE_ENTRIES;
+        }
+    };
+
+    public TripScorer(String accessToken) {
+        this(new HttpMatrixSource(accessToken));
+    }
+
+    TripScorer(MatrixSource matrixSource) {
+        this.matrixSource = matrixSource;
+    }
+
+    public void scoreAsync(double originLat, double originLng, List<Candidate> candidates, Callback callback) {
+        executor.execute(() -> {
+            try {
+                callback.onScored(score(originLat, originLng, candidates, System.currentTimeMillis()));
+            } catch (Exception e) {
+                callback.onError(e);
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Synchronous scoring; call from the executor (or tests). */
+    List<Score> score(double originLat, double originLng, List<Candidate> candidates, long nowMs) {
+        double[] straight = new double[candidates.size()];
+        List<Integer> order = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            Candidate c = candidates.get(i);
+            straight[i] = haversineMeters(originLat, originLng, c.lat, c.lng);
+            order.add(i);
+        }
+        Collections.sort(order, Comparator.comparingDouble(i -> straight[i]));
+
+        Score[] scores = new Score[candidates.size()];
+        List<Integer> misses = new ArrayList<>();
+        String originCell = cell(originLat, originLng);
+
+        for (int rank = 0; rank < order.size(); rank++) {
+            int i = order.get(rank);
+            Candidate c = candidates.get(i);
+            double straightM = straight[i];
+            boolean shortlisted = rank < SHORTLIST_SIZE && straightM <= PREFILTER_RADIUS_M;
+            if (!shortlisted) {
+                scores[i] = estimate(c, straightM);
+                continue;
+            }
+            CachedLeg cached = cache.get(cacheKey(originCell, c));
+            if (cached != null && nowMs - cached.storedAtMs <= CACHE_TTL_MS) {
+                scores[i] = new Score(c.id, cached.durationS, cached.distanceM, straightM, SOURCE_CACHE);
+            } else {
+                misses.add(i);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            fillFromMatrix(originLat, originLng, originCell, candidates, straight, misses, scores, nowMs);
+        }
+
+        List<Score> result = new ArrayList<>(scores.length);
+        Collections.addAll(result, scores);
+        Collections.sort(result, Comparator.comparingDouble(s -> s.etaSeconds));
+        return result;
+    }
+
+    private void fillFromMatrix(double originLat, double originLng, String originCell, List<Candidate> candidates,
+            double[] straight, List<Integer> misses, Score[] scores, long nowMs) {
+        List<Candidate> destinations = new ArrayList<>(misses.size());
+        for (int i : misses) {
+            destinations.add(candidates.get(i));
+        }
+
+        double[][] matrix = null;
+        try {
+            matrix = matrixSource.fetch(originLat, originLng, destinations);
+        } catch (IOException e) {
+            Log.w(TAG, "Matrix request failed, using straight-line estimates", e);
+        }
+
+        for (int k = 0; k < misses.size(); k++) {
+            int i = misses.get(k);
+            Candidate c = candidates.get(i);
+            double straightM = straight[i];
+            double duration = matrix != null ? matrix[0][k] : Double.NaN;
+            double distance = matrix != null ? matrix[1][k] : Double.NaN;
+            if (Double.isNaN(duration)) {
+                scores[i] = estimate(c, straightM);
+                continue;
+            }
+            if (Double.isNaN(distance)) {
+                distance = straightM * DETOUR_FACTOR;
+            }
+            cache.put(cacheKey(originCell, c), new CachedLeg(duration, distance, nowMs));
+            scores[i] = new Score(c.id, duration, distance, straightM, SOURCE_MATRIX);
+        }
+    }
+
+    private static Score estimate(Candidate c, double straightM) {
+        double distance = straightM * DETOUR_FACTOR;
+        return new Score(c.id, distance / FALLBACK_SPEED_MPS, distance, straightM, SOURCE_ESTIMATE);
+    }
+
+    private static String cacheKey(String originCell, Candidate c) {
+        return originCell + "|" + cell(c.lat, c.lng);
+    }
+
+    static String cell(double lat, double lng) {
+        return (long) Math.floor(lat / GRID_CELL_DEG) + ":" + (long) Math.floor(lng / GRID_CELL_DEG);
+    }
+
+    static double haversineMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                        * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 6_371_000 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /** Mapbox Matrix API, one source (index 0) to all destinations. */
+    static final class HttpMatrixSource implements MatrixSource {
+        private final String accessToken;
+
+        HttpMatrixSource(String accessToken) {
+            this.accessToken = accessToken;
+        }
+
+        @Override
+        public double[][] fetch(double originLat, double originLng, List<Candidate> destinations) throws IOException {
+            StringBuilder coords = new StringBuilder(coordinate(originLng, originLat));
+            for (Candidate c : destinations) {
+                coords.append(';').append(coordinate(c.lng, c.lat));
+            }
+            URL url = new URL(MATRIX_URL + coords + "?sources=0&annotations=duration,distance&access_token="
+                    + accessToken);
+
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            try {
+                int status = connection.getResponseCode();
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Matrix API HTTP " + status);
+                }
+                StringBuilder body = new StringBuilder();
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        body.append(line);
+                    }
+                }
+                JSONObject json = new JSONObject(body.toString());
+                if (!"Ok".equals(json.optString("code"))) {
+                    throw new IOException("Matrix API code " + json.optString("code"));
+                }
+                // Row 0 is the driver; column 0 is the driver too, pickups start at 1
+                return new double[][] {
+                        row(json.optJSONArray("durations"), destinations.size()),
+                        row(json.optJSONArray("distances"), destinations.size())
+                };
+            } catch (org.json.JSONException e) {
+                throw new IOException("Malformed Matrix API response", e);
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        private static double[] row(JSONArray table, int count) {
+            double[] values = new double[count];
+            JSONArray first = table != null ? table.optJSONArray(0) : null;
+            for (int k = 0; k < count; k++) {
+                values[k] = first == null || first.isNull(k + 1) ? Double.NaN : first.optDouble(k + 1, Double.NaN);
+            }
+            return values;
+        }
+
+        private static String coordinate(double lng, double lat) {
+            return String.format(Locale.US, "%.6f,%.6f", lng, lat);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.taxitot.driver;
+
+import static org.junit.Assert.assertEquals;
+
+import com.taxitot.driver.NavigationEngine.Waypoint;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class AlternativeRouteMatcherTest {
+
+    // Both start north for ~220m, then the primary keeps north and the
+    // alternative turns east on a parallel street grid
+    private static final Waypoint START = new Waypoint(-8.8400, 13.2890);
+    private static final Waypoint FORK = new Waypoint(-8.8380, 13.2890);
+    private static final List<Waypoint> PRIMARY = Arrays.asList(START, FORK, new Waypoint(-8.8340, 13.2890));
+    private static final List<Waypoint> ALTERNATIVE = Arrays.asList(START, FORK,
+            new Waypoint(-8.8380, 13.2930), new Waypoint(-8.8340, 13.2930));
+
+    private static AlternativeRouteMatcher matcher() {
+        AlternativeRouteMatcher matcher = new AlternativeRouteMatcher();
+        matcher.setRoutes(Arrays.asList(PRIMARY, ALTERNATIVE));
+        return matcher;
+    }
+
+    @Test
+    public void staysOnPrimaryBeforeTheFork() {
+        AlternativeRouteMatcher matcher = matcher();
+        for (double lat = -8.8400; lat < -8.8381; lat += 0.0002) {
+            assertEquals(-1, matcher.onFix(new Waypoint(lat, 13.2890)));
+        }
+        // Both routes share the stretch, so both have progressed
+        assertEquals(matcher.alongMeters(0), matcher.alongMeters(1), 1);
+    }
+
+    @Test
+    public void commitsAfterConsecutiveFixesOnAlternative() {
+        AlternativeRouteMatcher matcher = matcher();
+        matcher.onFix(FORK);
+        // East of the fork: ~66m, ~88m, ~110m off the primary
+        assertEquals(-1, matcher.onFix(new Waypoint(-8.8380, 13.2896)));
+        assertEquals(-1, matcher.onFix(new Waypoint(-8.8380, 13.2898)));
+        assertEquals(1, matcher.onFix(new Waypoint(-8.8380, 13.2900)));
+        // Distance along the alternative: fork plus ~110m east
+        assertEquals(332, matcher.alongMeters(1), 5);
+    }
+
+    @Test
+    public void noiseOffBothRoutesDoesNotCommit() {
+        AlternativeRouteMatcher matcher = matcher();
+        matcher.onFix(FORK);
+        for (int i = 0; i < 5; i++) {
+            // ~100m west: off the primary, but not on the alternative either
+            assertEquals(-1, matcher.onFix(new Waypoint(-8.8370, 13.2881)));
+        }
+    }
+
+    @Test
+    public void singleRouteNeverCommits() {
+        AlternativeRouteMatcher matcher = new AlternativeRouteMatcher();
+        matcher.setRoutes(Arrays.asList(PRIMARY));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(-1, matcher.onFix(new Waypoint(-8.8380, 13.2900)));
+        }
+    }
+}
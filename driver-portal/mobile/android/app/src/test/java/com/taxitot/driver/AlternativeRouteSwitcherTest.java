@@ -0,0 +1,88 @@
+package com.taxitot.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.taxitot.driver.NavigationEngine.RouteInfo;
+import com.taxitot.driver.NavigationEngine.Waypoint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AlternativeRouteSwitcherTest {
+
+    private static final Waypoint START = new Waypoint(-8.8400, 13.2890);
+
+    private static RouteInfo route(String id, Waypoint end) {
+        return new RouteInfo(id, 500, 60, Collections.unmodifiableList(Arrays.asList(START, end)));
+    }
+
+    private static final RouteInfo PRIMARY = route("a", new Waypoint(-8.8340, 13.2890));
+    private static final RouteInfo ALTERNATIVE = route("b", new Waypoint(-8.8340, 13.2930));
+
+    private FakeNavigationEngine engine;
+    private AlternativeRouteSwitcher switcher;
+    private final List<String> switchedTo = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new FakeNavigationEngine(START, 10, 1000, 5);
+        switcher = new AlternativeRouteSwitcher(routes -> switchedTo.add(routes.get(0).id));
+        onEngine(() -> {
+            switcher.start(engine);
+            engine.setRoutes(Arrays.asList(PRIMARY, ALTERNATIVE));
+        });
+    }
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void rerouteToHeldAlternativeIsAnSdkSwitch() throws Exception {
+        engine.simulateReroute(Arrays.asList(ALTERNATIVE, PRIMARY));
+
+        AlternativeRouteSwitcher.Stats stats = stats();
+        assertEquals(1, stats.sdkSwitches);
+        assertEquals(0, stats.networkReroutes);
+        assertEquals(Collections.singletonList("b"), switchedTo);
+        assertEquals(1.0, stats.switchRate(), 0);
+    }
+
+    @Test
+    public void rerouteToNewRouteIsANetworkReroute() throws Exception {
+        engine.simulateReroute(Collections.singletonList(route("c", new Waypoint(-8.8300, 13.2900))));
+
+        AlternativeRouteSwitcher.Stats stats = stats();
+        assertEquals(0, stats.sdkSwitches);
+        assertEquals(1, stats.networkReroutes);
+        assertTrue(switchedTo.isEmpty());
+        assertEquals(0.0, stats.switchRate(), 0);
+    }
+
+    private AlternativeRouteSwitcher.Stats stats() throws InterruptedException {
+        AtomicReference<AlternativeRouteSwitcher.Stats> stats = new AtomicReference<>();
+        onEngine(() -> stats.set(switcher.snapshot()));
+        return stats.get();
+    }
+
+    /** Runs on the engine thread after anything already queued there. */
+    private void onEngine(Runnable action) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        engine.runOnEngineThread(() -> {
+            action.run();
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
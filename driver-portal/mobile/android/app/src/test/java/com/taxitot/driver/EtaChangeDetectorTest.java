@@ -0,0 +1,59 @@
+package com.taxitot.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class EtaChangeDetectorTest {
+
+    @Test
+    public void ignoresProgressWithoutRefresh() {
+        EtaChangeDetector detector = new EtaChangeDetector();
+        assertNull(detector.onProgress(600, 5000, 0));
+        // Driving slower than predicted is not a refresh
+        assertNull(detector.onProgress(900, 4000, 10_000));
+    }
+
+    @Test
+    public void reportsRefreshPastThreshold() {
+        EtaChangeDetector detector = new EtaChangeDetector();
+        detector.onProgress(600, 5000, 0);
+
+        detector.onRefresh();
+        // 10s later the baseline projects 590s; traffic adds 120s
+        EtaChangeDetector.Change change = detector.onProgress(710, 4900, 10_000);
+        assertNotNull(change);
+        assertEquals(590, change.previousDurationRemaining, 0.01);
+        assertEquals(120, change.deltaSeconds(), 0.01);
+    }
+
+    @Test
+    public void smallRefreshesAccumulateAgainstBaseline() {
+        EtaChangeDetector detector = new EtaChangeDetector();
+        detector.setThresholds(60, 0);
+        detector.onProgress(600, 5000, 0);
+
+        detector.onRefresh();
+        assertNull(detector.onProgress(640, 5000, 0));
+        detector.onRefresh();
+        EtaChangeDetector.Change change = detector.onProgress(670, 5000, 0);
+        assertNotNull(change);
+        assertEquals(70, change.deltaSeconds(), 0.01);
+
+        // Reported change is the new baseline
+        detector.onRefresh();
+        assertNull(detector.onProgress(690, 5000, 0));
+    }
+
+    @Test
+    public void resetDropsPendingRefresh() {
+        EtaChangeDetector detector = new EtaChangeDetector();
+        detector.onProgress(600, 5000, 0);
+        detector.onRefresh();
+        detector.reset();
+        // New route: sets the baseline, nothing to compare
+        assertNull(detector.onProgress(1200, 9000, 0));
+    }
+}
@@ -0,0 +1,291 @@
+package com.taxitot.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.taxitot.driver.NavigationEngine.RouteInfo;
+import com.taxitot.driver.NavigationEngine.Waypoint;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session logic against FakeNavigationEngine on a plain JVM.
+ */
+public class NavigationSessionTest {
+
+    private static final Waypoint DRIVER = new Waypoint(-8.8390, 13.2890);
+    // ~220m and ~440m north of the driver
+    private static final Waypoint PICKUP = new Waypoint(-8.8370, 13.2890);
+    private static final Waypoint DROPOFF = new Waypoint(-8.8350, 13.2890);
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private FakeNavigationEngine engine;
+    private NavigationSession session;
+    private final BlockingQueue<NavigationSessionState> transitions = new LinkedBlockingQueue<>();
+    private final List<String> readyLegs = new CopyOnWriteArrayList<>();
+    private final List<String> engineEvents = new CopyOnWriteArrayList<>();
+    private final List<String> discardedAdoptions = new CopyOnWriteArrayList<>();
+
+    private final NavigationSession.Listener listener = new NavigationSession.Listener() {
+        @Override
+        public void onStateChanged(NavigationSessionState from, NavigationSessionState to, long elapsed) {
+            transitions.add(to);
+        }
+
+        @Override
+        public void onRouteError(String message) {
+        }
+
+        @Override
+        public void onLegReady(String key, Waypoint destination, List<RouteInfo> routes) {
+            readyLegs.add(key);
+        }
+
+        @Override
+        public void onSessionStarted(NavigationEngine engine) {
+        }
+
+        @Override
+        public void onSessionStopping(NavigationEngine engine) {
+            engineEvents.add("stopping");
+        }
+
+        @Override
+        public void onAdoptionDiscarded(String key) {
+            discardedAdoptions.add(key);
+        }
+    };
+
+    private void createSession(double speedMps, long tickMs, long routeLatencyMs) {
+        engine = new FakeNavigationEngine(DRIVER, speedMps, tickMs, routeLatencyMs);
+        session = new NavigationSession(engine, listener);
+    }
+
+    @After
+    public void tearDown() {
+        if (session != null) {
+            session.shutdown();
+        }
+        if (engine != null) {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void runsThroughAllStatesToArrival() throws Exception {
+        createSession(100, 10, 5);
+
+        session.start("42:pickup", PICKUP, null);
+
+        awaitState(NavigationSessionState.LOCATING);
+        awaitState(NavigationSessionState.ROUTING);
+        awaitState(NavigationSessionState.NAVIGATING);
+        awaitState(NavigationSessionState.ARRIVED);
+        assertEquals(1, engine.routeRequestCount());
+        assertTrue(engine.progressEventCount() > 0);
+    }
+
+    @Test
+    public void duplicateStartForSameTripAndPhaseIsNoOp() throws Exception {
+        createSession(10, 20, 5);
+
+        for (int i = 0; i < 5; i++) {
+            session.start("42:pickup", PICKUP, null);
+        }
+        awaitState(NavigationSessionState.NAVIGATING);
+        session.start("42:pickup", PICKUP, null);
+        Thread.sleep(100);
+
+        assertEquals(1, engine.routeRequestCount());
+        assertEquals(NavigationSessionState.NAVIGATING, session.getState());
+    }
+
+    @Test
+    public void phaseChangeCancelsInFlightRequest() throws Exception {
+        createSession(10, 20, 500);
+
+        session.start("42:pickup", PICKUP, null);
+        awaitState(NavigationSessionState.ROUTING);
+        // Request must be in flight, not just scheduled on the engine thread
+        while (engine.routeRequestCount() == 0) {
+            Thread.sleep(1);
+        }
+        session.start("42:dropoff", DROPOFF, null);
+
+        awaitState(NavigationSessionState.NAVIGATING);
+        assertEquals(2, engine.routeRequestCount());
+        assertEquals(1, engine.cancelledRequestCount());
+        assertEquals(Collections.singletonList("42:dropoff"), readyLegs);
+    }
+
+    @Test
+    public void failedRouteIsRetriedBySameKey() throws Exception {
+        createSession(10, 20, 5);
+        engine.setFailRouteRequests(true);
+
+        session.start("42:pickup", PICKUP, null);
+        awaitState(NavigationSessionState.ROUTE_FAILED);
+        assertEquals(1, engine.routeRequestCount());
+
+        engine.setFailRouteRequests(false);
+        session.start("42:pickup", PICKUP, null);
+
+        awaitState(NavigationSessionState.NAVIGATING);
+        assertEquals(2, engine.routeRequestCount());
+        assertEquals(Collections.singletonList("42:pickup"), readyLegs);
+    }
+
+    @Test
+    public void newTripRestartsFromIdle() throws Exception {
+        createSession(10, 20, 5);
+
+        session.start("42:pickup", PICKUP, null);
+        awaitState(NavigationSessionState.NAVIGATING);
+        session.start("43:pickup", PICKUP, null);
+
+        awaitState(NavigationSessionState.IDLE);
+        awaitState(NavigationSessionState.NAVIGATING);
+        assertEquals(2, engine.routeRequestCount());
+    }
+
+    @Test
+    public void adoptsRestoredRoutesWithoutRequest() throws Exception {
+        createSession(100, 10, 5);
+        restoreRoute();
+
+        session.adopt("42:pickup", PICKUP, TIMEOUT_MS);
+        awaitState(NavigationSessionState.NAVIGATING);
+        session.start("42:pickup", PICKUP, null);
+        awaitState(NavigationSessionState.ARRIVED);
+
+        assertEquals(0, engine.routeRequestCount());
+    }
+
+    @Test
+    public void unconfirmedAdoptionIsStopped() throws Exception {
+        createSession(1, 20, 5);
+        restoreRoute();
+
+        session.adopt("42:pickup", PICKUP, 50);
+        awaitState(NavigationSessionState.NAVIGATING);
+
+        awaitState(NavigationSessionState.IDLE);
+        assertEquals(Collections.singletonList("42:pickup"), discardedAdoptions);
+        assertEquals(Collections.singletonList("stopping"), engineEvents);
+    }
+
+    @Test
+    public void discardIgnoresConfirmedAdoption() throws Exception {
+        createSession(1, 20, 5);
+        restoreRoute();
+
+        session.adopt("42:pickup", PICKUP, 100);
+        session.start("42:pickup", PICKUP, null);
+        session.discardAdopted();
+        awaitState(NavigationSessionState.NAVIGATING);
+        Thread.sleep(200);
+
+        assertEquals(NavigationSessionState.NAVIGATING, session.getState());
+        assertTrue(discardedAdoptions.isEmpty());
+        assertEquals(0, engine.routeRequestCount());
+    }
+
+    @Test
+    public void serializedRouteRoundTrips() {
+        createSession(10, 20, 5);
+        RouteInfo route = engine.deserializeRoute("fake-1|100.5|10.05|1.0,2.0;3.0,4.0");
+
+        RouteInfo copy = engine.deserializeRoute(engine.serializeRoute(route));
+
+        assertEquals("fake-1", copy.id);
+        assertEquals(100.5, copy.distanceMeters, 0);
+        assertEquals(engine.serializeRoute(route), engine.serializeRoute(copy));
+    }
+
+    @Test
+    public void stopReturnsToIdle() throws Exception {
+        createSession(10, 20, 5);
+
+        session.start("42:pickup", PICKUP, null);
+        awaitState(NavigationSessionState.NAVIGATING);
+        session.stop();
+
+        awaitState(NavigationSessionState.IDLE);
+        assertEquals(NavigationSessionState.IDLE, session.getState());
+    }
+
+    @Test
+    public void shutdownCallbackRunsAfterEngineStop() throws Exception {
+        createSession(10, 20, 5);
+        session.start("42:pickup", PICKUP, null);
+        awaitState(NavigationSessionState.NAVIGATING);
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        session.shutdown(() -> {
+            engineEvents.add("stopped");
+            stopped.countDown();
+        });
+
+        assertTrue(stopped.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(Arrays.asList("stopping", "stopped"), engineEvents);
+        assertEquals(NavigationSessionState.IDLE, session.getState());
+    }
+
+    @Test
+    public void backToBackSessionsEachReachNavigating() throws Exception {
+        createSession(10, 1, 0);
+        int sessions = 50;
+        List<String> keys = new ArrayList<>();
+
+        for (int i = 0; i < sessions; i++) {
+            String key = i + ":pickup";
+            keys.add(key);
+            session.start(key, PICKUP, null);
+            awaitState(NavigationSessionState.LOCATING);
+            awaitState(NavigationSessionState.ROUTING);
+            awaitState(NavigationSessionState.NAVIGATING);
+            assertEquals(NavigationSessionState.NAVIGATING, session.getState());
+        }
+
+        assertEquals(sessions, engine.routeRequestCount());
+        assertEquals(keys, readyLegs);
+    }
+
+    /** What NavigationRecovery does after process death. */
+    private void restoreRoute() throws InterruptedException {
+        RouteInfo saved = engine.deserializeRoute(
+                "fake-7|222.0|2.22|" + DRIVER.lat + "," + DRIVER.lng + ";" + PICKUP.lat + "," + PICKUP.lng);
+        CountDownLatch restored = new CountDownLatch(1);
+        engine.runOnEngineThread(() -> {
+            engine.startTripSession();
+            engine.setRoutes(Collections.singletonList(saved));
+            restored.countDown();
+        });
+        restored.await();
+    }
+
+    private void awaitState(NavigationSessionState expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            NavigationSessionState next = transitions.poll(deadline - System.currentTimeMillis(),
+                    TimeUnit.MILLISECONDS);
+            if (next == expected) {
+                return;
+            }
+        }
+        fail("Timed out waiting for " + expected + " (current " + session.getState() + ")");
+    }
+}
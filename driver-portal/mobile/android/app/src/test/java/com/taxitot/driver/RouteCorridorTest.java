@@ -0,0 +1,55 @@
+package com.taxitot.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.taxitot.driver.NavigationEngine.Waypoint;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class RouteCorridorTest {
+
+    // ~1.1km north along one meridian, points every ~111m
+    private static final List<Waypoint> NORTH = Arrays.asList(
+            new Waypoint(-8.840, 13.289), new Waypoint(-8.839, 13.289), new Waypoint(-8.838, 13.289),
+            new Waypoint(-8.837, 13.289), new Waypoint(-8.836, 13.289), new Waypoint(-8.835, 13.289),
+            new Waypoint(-8.834, 13.289), new Waypoint(-8.833, 13.289), new Waypoint(-8.832, 13.289),
+            new Waypoint(-8.831, 13.289), new Waypoint(-8.830, 13.289));
+
+    @Test
+    public void sliceCutsAtDistances() {
+        List<Waypoint> stretch = RouteCorridor.slice(NORTH, 50, 300);
+        double start = TripScorer.haversineMeters(NORTH.get(0).lat, NORTH.get(0).lng,
+                stretch.get(0).lat, stretch.get(0).lng);
+        Waypoint last = stretch.get(stretch.size() - 1);
+        double end = TripScorer.haversineMeters(NORTH.get(0).lat, NORTH.get(0).lng, last.lat, last.lng);
+        assertEquals(50, start, 1);
+        assertEquals(300, end, 1);
+    }
+
+    @Test
+    public void ringsCoverStretchWithWidth() {
+        List<List<Waypoint>> rings = RouteCorridor.rings(NORTH, 0, 1000, 100);
+        // Chords of ~200m (two segments each)
+        assertEquals(5, rings.size());
+        for (List<Waypoint> ring : rings) {
+            assertEquals(5, ring.size());
+            assertEquals(ring.get(0).lat, ring.get(4).lat, 0);
+            // Route runs north: corners sit 100m east and west of it
+            double width = TripScorer.haversineMeters(ring.get(1).lat, ring.get(1).lng,
+                    ring.get(2).lat, ring.get(2).lng);
+            assertEquals(200, width, 1);
+        }
+        // Stretched 100m past the last point
+        double northmost = rings.get(rings.size() - 1).get(1).lat;
+        assertTrue(northmost > -8.8310 + 0.0008);
+    }
+
+    @Test
+    public void emptyPastTheEnd() {
+        assertTrue(RouteCorridor.rings(NORTH, 5000, 1000, 100).isEmpty());
+    }
+}
@@ -0,0 +1,175 @@
+package com.taxitot.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.taxitot.driver.TripScorer.Candidate;
+import com.taxitot.driver.TripScorer.Score;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scoring against a fake MatrixSource: no network, explicit clock.
+ */
+public class TripScorerTest {
+
+    private static final double DRIVER_LAT = -8.8390;
+    private static final double DRIVER_LNG = 13.2890;
+
+    /** Records requests; answers 100s + 10s per destination position. */
+    private static final class FakeMatrix implements TripScorer.MatrixSource {
+        final List<List<String>> requests = new ArrayList<>();
+        boolean fail;
+
+        @Override
+        public double[][] fetch(double originLat, double originLng, List<Candidate> destinations) throws IOException {
+            List<String> ids = new ArrayList<>();
+            for (Candidate c : destinations) {
+                ids.add(c.id);
+            }
+            requests.add(ids);
+            if (fail) {
+                throw new IOException("Matrix API HTTP 503");
+            }
+            double[] durations = new double[destinations.size()];
+            double[] distances = new double[destinations.size()];
+            for (int k = 0; k < destinations.size(); k++) {
+                durations[k] = 100 + 10 * k;
+                distances[k] = 1000 + 100 * k;
+            }
+            return new double[][] { durations, distances };
+        }
+    }
+
+    /** Pickups north of the driver, ~1.1km apart (one grid cell each), listed farthest first. */
+    private static List<Candidate> tripsNorth(int count) {
+        List<Candidate> trips = new ArrayList<>();
+        for (int i = count; i >= 1; i--) {
+            trips.add(new Candidate("t" + i, DRIVER_LAT + 0.01 * i, DRIVER_LNG));
+        }
+        return trips;
+    }
+
+    private static Map<String, Score> byId(List<Score> scores) {
+        Map<String, Score> map = new HashMap<>();
+        for (Score score : scores) {
+            map.put(score.id, score);
+        }
+        return map;
+    }
+
+    @Test
+    public void onlyClosestTenGoToMatrix() {
+        FakeMatrix matrix = new FakeMatrix();
+        TripScorer scorer = new TripScorer(matrix);
+
+        Map<String, Score> scores = byId(scorer.score(DRIVER_LAT, DRIVER_LNG, tripsNorth(12), 0));
+
+        assertEquals(1, matrix.requests.size());
+        assertEquals(Arrays.asList("t1", "t2", "t3", "t4", "t5", "t6", "t7", "t8", "t9", "t10"),
+                matrix.requests.get(0));
+        assertEquals(TripScorer.SOURCE_MATRIX, scores.get("t10").source);
+        assertEquals(TripScorer.SOURCE_ESTIMATE, scores.get("t11").source);
+        assertEquals(TripScorer.SOURCE_ESTIMATE, scores.get("t12").source);
+    }
+
+    @Test
+    public void pickupsBeyondRadiusAreEstimated() {
+        FakeMatrix matrix = new FakeMatrix();
+        TripScorer scorer = new TripScorer(matrix);
+        List<Candidate> trips = tripsNorth(3);
+        // ~22km east: within the shortlist size, outside the radius
+        trips.add(new Candidate("far", DRIVER_LAT, DRIVER_LNG + 0.2));
+
+        Map<String, Score> scores = byId(scorer.score(DRIVER_LAT, DRIVER_LNG, trips, 0));
+
+        assertEquals(Arrays.asList("t1", "t2", "t3"), matrix.requests.get(0));
+        assertEquals(TripScorer.SOURCE_ESTIMATE, scores.get("far").source);
+        assertTrue(scores.get("far").straightLineMeters > TripScorer.PREFILTER_RADIUS_M);
+    }
+
+    @Test
+    public void cachedPerGridCellUntilTtl() {
+        FakeMatrix matrix = new FakeMatrix();
+        TripScorer scorer = new TripScorer(matrix);
+        List<Candidate> trips = tripsNorth(3);
+
+        scorer.score(DRIVER_LAT, DRIVER_LNG, trips, 0);
+        // Driver moved ~60m, same 0.005 degree cell
+        List<Score> cached = scorer.score(DRIVER_LAT - 0.0005, DRIVER_LNG - 0.0003, trips, 60_000);
+
+        assertEquals(1, matrix.requests.size());
+        for (Score score : cached) {
+            assertEquals(TripScorer.SOURCE_CACHE, score.source);
+        }
+        assertEquals(100, byId(cached).get("t1").etaSeconds, 0);
+
+        List<Score> expired = scorer.score(DRIVER_LAT, DRIVER_LNG, trips, TripScorer.CACHE_TTL_MS + 1);
+
+        assertEquals(2, matrix.requests.size());
+        for (Score score : expired) {
+            assertEquals(TripScorer.SOURCE_MATRIX, score.source);
+        }
+    }
+
+    @Test
+    public void driverInAnotherCellMissesCache() {
+        FakeMatrix matrix = new FakeMatrix();
+        TripScorer scorer = new TripScorer(matrix);
+        List<Candidate> trips = tripsNorth(3);
+
+        scorer.score(DRIVER_LAT, DRIVER_LNG, trips, 0);
+        scorer.score(DRIVER_LAT - TripScorer.GRID_CELL_DEG, DRIVER_LNG, trips, 1_000);
+
+        assertEquals(2, matrix.requests.size());
+    }
+
+    @Test
+    public void matrixFailureFallsBackToStraightLineOrder() {
+        FakeMatrix matrix = new FakeMatrix();
+        matrix.fail = true;
+        TripScorer scorer = new TripScorer(matrix);
+        List<Candidate> trips = tripsNorth(4);
+
+        List<Score> scores = scorer.score(DRIVER_LAT, DRIVER_LNG, trips, 0);
+
+        List<String> order = new ArrayList<>();
+        for (Score score : scores) {
+            assertEquals(TripScorer.SOURCE_ESTIMATE, score.source);
+            assertTrue(score.distanceMeters > score.straightLineMeters);
+            order.add(score.id);
+        }
+        assertEquals(Arrays.asList("t1", "t2", "t3", "t4"), order);
+
+        // Estimates are not cached: the next call asks the matrix again
+        matrix.fail = false;
+        scores = scorer.score(DRIVER_LAT, DRIVER_LNG, trips, 1_000);
+        assertEquals(2, matrix.requests.size());
+        assertEquals(TripScorer.SOURCE_MATRIX, scores.get(0).source);
+    }
+
+    @Test
+    public void matrixResultsRankAheadOfSlowerEstimates() {
+        FakeMatrix matrix = new FakeMatrix();
+        TripScorer scorer = new TripScorer(matrix);
+        List<Candidate> trips = tripsNorth(12);
+
+        List<Score> scores = scorer.score(DRIVER_LAT, DRIVER_LNG, trips, 0);
+
+        // 100..190s from the matrix, then the ~12-13km straight-line estimates
+        assertEquals("t1", scores.get(0).id);
+        assertEquals("t10", scores.get(9).id);
+        assertEquals("t11", scores.get(10).id);
+        assertEquals("t12", scores.get(11).id);
+        for (int i = 1; i < scores.size(); i++) {
+            assertTrue(scores.get(i - 1).etaSeconds <= scores.get(i).etaSeconds);
+        }
+    }
+}
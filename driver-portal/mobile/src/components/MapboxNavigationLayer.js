@@ -21,7 +21,8 @@ const MapboxNavigationLayer = ({
             MapboxNavigation.startUberRide(
                 trip.pickup_location || trip.coords,
                 trip.dropoff_location || trip.destPos,
-                rideStatus
+                rideStatus,
+                trip.id
             );
             isStarted.current = true;
         } else if (rideStatus === 'idle' || rideStatus === 'finished') {
@@ -30,15 +31,18 @@ const MapboxNavigationLayer = ({
                 isStarted.current = false;
             }
         }
+    }, [trip, rideStatus]);
 
-        // ✅ FIX: Cleanup on unmount to prevent navigation running after View is destroyed
+    // ✅ FIX: Cleanup on unmount only; stopping on every trip/status change
+    // would restart a session that native already treats as a no-op
+    useEffect(() => {
         return () => {
             if (isStarted.current) {
                 MapboxNavigation.stopNavigation();
                 isStarted.current = false;
             }
         };
-    }, [trip, rideStatus]);
+    }, []);
 
     return (
         <View style={styles.container}>
@@ -7,6 +7,9 @@ import { requireNativeComponent, ViewProps } from 'react-native';
  * a linha da rota (RouteLine) e a câmera de navegação.
  * 
  * @props mapStyle - URI do estilo do Mapbox (padrão: mapbox://styles/mapbox/streets-v12)
+ * @props renderMode - 'auto' (padrão), 'full' ou 'lite'. Em 'auto' o perfil
+ *        lite (30 FPS, câmera 2D, menos camadas) é escolhido em telemóveis
+ *        fracos ou quando o aparelho aquece.
  */
 const MapboxNavigationView = requireNativeComponent('MapboxNavigationView');
 
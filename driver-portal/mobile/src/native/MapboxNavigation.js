@@ -8,13 +8,15 @@ export default {
      * Starts an Uber-grade ride flow from pickup to dropoff.
      * @param {Object} pickup - { lat: number, lng: number }
      * @param {Object} dropoff - { lat: number, lng: number }
+     * @param {string} status - 'accepted' (to pickup) or 'ongoing' (to dropoff)
+     * @param {string|number} tripId - repeated calls for the same trip and phase are ignored natively
      */
-    startUberRide: (pickup, dropoff, status) => {
+    startUberRide: (pickup, dropoff, status, tripId) => {
         if (!MapboxNavigation) {
             console.error('MapboxNavigation native module is not linked.');
             return;
         }
-        MapboxNavigation.startUberRide(pickup, dropoff, status);
+        MapboxNavigation.startUberRide(pickup, dropoff, status, tripId != null ? String(tripId) : null);
     },
 
     /**
@@ -25,6 +27,132 @@ export default {
         MapboxNavigation.stopNavigation();
     },
 
+    /**
+     * Current native session state: idle | locating | routing | route_failed | navigating | arrived.
+     * After route_failed, startUberRide with the same trip and status retries the route.
+     * Transitions are also emitted as 'onNavigationStateChanged' with elapsedMs.
+     * @returns {Promise<string>}
+     */
+    getNavigationState: () => {
+        if (!MapboxNavigation) return Promise.resolve('idle');
+        return MapboxNavigation.getNavigationState();
+    },
+
+    /**
+     * Background refresh of the active route's traffic (durations, congestion) without
+     * a new route request. Emits 'onEtaChanged' { durationRemaining, previousDurationRemaining,
+     * deltaSeconds, distanceRemaining } when a refresh moves the ETA by at least
+     * max(etaChangeThresholdSeconds, etaChangeThresholdRatio * remaining).
+     * The interval (min 30000, default 60000) is persisted and used when the native navigation
+     * instance is created; intervalApplied is false when one is already running, so the new
+     * interval takes effect at the next app start.
+     * @param {Object} options - { intervalMs?, etaChangeThresholdSeconds? (60), etaChangeThresholdRatio? (0.1) }
+     * @returns {Promise<{intervalApplied: boolean}|null>}
+     */
+    setRouteRefreshOptions: (options) => {
+        if (!MapboxNavigation) return Promise.resolve(null);
+        return MapboxNavigation.setRouteRefreshOptions(options || {});
+    },
+
+    /**
+     * Predictive prefetch of map and routing tiles along the active route (low priority,
+     * throttled, capped per trip session). Applies from the next prefetch window.
+     * @param {Object} options - { corridorMeters? (300), lookAheadMeters? (5000),
+     *   byteBudget? (40MB), maxBytesPerSecond? (128KB), minZoom? (13), maxZoom? (17) }
+     */
+    setTileCacheOptions: (options) => {
+        if (!MapboxNavigation) return;
+        MapboxNavigation.setTileCacheOptions(options || {});
+    },
+
+    /**
+     * Prefetch and map tile cache metrics for the current or last trip session.
+     * hitRate is the share of map tile requests served from the cache or the prefetched TileStore.
+     * @returns {Promise<{running: boolean, prefetches: number, completedPrefetches: number, prefetchedBytes: number, byteBudget: number, budgetExhausted: boolean, tileRequests: number, cacheHits: number, tileStoreHits: number, hitRate: number}|null>}
+     */
+    getTileCacheStats: () => {
+        if (!MapboxNavigation) return Promise.resolve(null);
+        return MapboxNavigation.getTileCacheStats();
+    },
+
+    /**
+     * Alternative routes are requested and kept natively; when the driver takes one it becomes
+     * the primary on device, without a reroute request, and 'onRouteSwitched'
+     * { routeId, distance, duration } is emitted (also when the SDK's own reroute picks a held alternative).
+     * sdkSwitches are reroutes where the SDK itself promoted a held alternative; networkReroutes
+     * fetched a new route. switchRate = (localSwitches + sdkSwitches) / (that + networkReroutes)
+     * for the current or last session.
+     * @returns {Promise<{running: boolean, alternatives: number, localSwitches: number, sdkSwitches: number, networkReroutes: number, switchRate: number}|null>}
+     */
+    getRouteSwitchStats: () => {
+        if (!MapboxNavigation) return Promise.resolve(null);
+        return MapboxNavigation.getRouteSwitchStats();
+    },
+
+    /**
+     * Ranks pending trips by approximate driving ETA to pickup in one native batch
+     * (straight-line prefilter + one matrix request, cached by grid cell).
+     * @param {Array} trips - trips as received from 'pending_trips' / 'new_trip_available'
+     * @param {Object} [origin] - { lat, lng }; defaults to the device's last known location
+     * @returns {Promise<Array<{id: string, etaSeconds: number, distanceMeters: number, straightLineMeters: number, source: string}>>}
+     */
+    scoreTrips: (trips, origin = null) => {
+        if (!MapboxNavigation) return Promise.resolve([]);
+        return MapboxNavigation.scoreTrips(trips, origin);
+    },
+
+    /**
+     * Inflates the native map ahead of time so mounting the navigation layer
+     * reuses a view with its style already loaded.
+     */
+    prewarmMap: () => {
+        if (!MapboxNavigation) return;
+        MapboxNavigation.prewarmMap();
+    },
+
+    /**
+     * Main-thread stalls (> thresholdMs) recorded natively while a trip session runs.
+     * Each record has durationMs, the navigation callback running at the time
+     * (e.g. 'location/MapboxNavigationView', 'view.routes', 'engine'), the topmost
+     * app frame and the sampled main-thread stacks (executing frame plus app frames).
+     * Keeps the last 50.
+     * @returns {Promise<{running: boolean, thresholdMs: number, probes: number, stalls: number, maxLatencyMs: number, records: Array}>}
+     */
+    getMainThreadStalls: () => {
+        if (!MapboxNavigation) return Promise.resolve(null);
+        return MapboxNavigation.getMainThreadStalls();
+    },
+
+    /**
+     * Clears recorded stalls and counters.
+     */
+    clearMainThreadStalls: () => {
+        if (!MapboxNavigation) return;
+        MapboxNavigation.clearMainThreadStalls();
+    },
+
+    /**
+     * Timings of the native resume after the app process was killed mid-trip
+     * (also emitted once as 'onNavigationRecovered'), or null if nothing was restored.
+     * The resumed session is provisional: unless startUberRide confirms the same
+     * trip and status within 90s it is stopped and 'onNavigationRecoveryDiscarded'
+     * ({ sessionKey }) is emitted.
+     * @returns {Promise<{sessionKey: string, trigger: string, recoveryMs: number, loadMs: number, snapshotAgeMs: number, distanceRemaining: number, durationRemaining: number}|null>}
+     */
+    getLastRecovery: () => {
+        if (!MapboxNavigation) return Promise.resolve(null);
+        return MapboxNavigation.getLastRecovery();
+    },
+
+    /**
+     * Stops the resumed session right away when the app knows the trip is over.
+     * No-op once startUberRide has confirmed it, or if nothing was resumed.
+     */
+    discardRecoveredNavigation: () => {
+        if (!MapboxNavigation) return;
+        MapboxNavigation.discardRecoveredNavigation();
+    },
+
     /**
      * Mutes or unmutes voice instructions.
      * @param {boolean} muted
@@ -77,6 +77,7 @@ export default function DashboardScreen({ navigation }) {
     const [isOnline, setIsOnline] = useState(false);
     const [stats, setStats] = useState({ rides: 0, earnings: 0 });
     const [requests, setRequests] = useState([]);
+    const [tripEtas, setTripEtas] = useState({});
     const [rideStatus, setRideStatus] = useState('idle');
     const [activeTrip, setActiveTrip] = useState(null);
     const [isLoading, setIsLoading] = useState(true);
@@ -128,7 +129,13 @@ export default function DashboardScreen({ navigation }) {
                     if (status) checkPermissions(); // Request if already online
                 }
                 if (storedStatus) setRideStatus(storedStatus);
+                // Native may have resumed navigation after a process kill; drop it
+                // if the persisted ride isn't one MapboxNavigationLayer will start
+                if (!storedTrip || !['accepted', 'ongoing'].includes(storedStatus)) {
+                    MapboxNavigation.discardRecoveredNavigation();
+                }
                 if (storedTrip) {
+                    MapboxNavigation.prewarmMap();
                     setActiveTrip(JSON.parse(storedTrip));
                     setMountMap(true);
                 }
@@ -326,6 +333,27 @@ export default function DashboardScreen({ navigation }) {
     }, []);
 
 
+    // Rank offers by real driving ETA to pickup (one native batch per list change)
+    useEffect(() => {
+        if (!isOnline || requests.length === 0) return;
+        let cancelled = false;
+        MapboxNavigation.scoreTrips(requests)
+            .then(scores => {
+                if (cancelled) return;
+                const byId = {};
+                scores.forEach(score => { byId[score.id] = score; });
+                setTripEtas(byId);
+            })
+            .catch(e => console.log('Trip scoring unavailable:', e?.message));
+        return () => { cancelled = true; };
+    }, [requests, isOnline]);
+
+    const sortedRequests = [...requests].sort((a, b) => {
+        const etaA = tripEtas[String(a.id)]?.etaSeconds ?? Number.MAX_VALUE;
+        const etaB = tripEtas[String(b.id)]?.etaSeconds ?? Number.MAX_VALUE;
+        return etaA - etaB;
+    });
+
     const fetchPendingTrips = async () => {
         try {
             const res = await api.get('/trips/pending');
@@ -432,6 +460,7 @@ export default function DashboardScreen({ navigation }) {
         setRequests([]);
         AsyncStorage.setItem('@tot_active_trip', JSON.stringify(trip));
         AsyncStorage.setItem('@tot_ride_status', 'accepted');
+        MapboxNavigation.prewarmMap();
 
         // Safety mount for the map component
         setTimeout(() => {
@@ -889,7 +918,7 @@ export default function DashboardScreen({ navigation }) {
 
                     {isOnline ? (
                         requests.length > 0 ? (
-                            requests.map((req, index) => (
+                            sortedRequests.map((req, index) => (
                                 <View key={req.id}>
                                     <TouchableOpacity style={styles.requestCard} onPress={() => handleAcceptRide(req)}>
 
@@ -899,7 +928,10 @@ export default function DashboardScreen({ navigation }) {
                                             </View>
                                             <View style={{ flex: 1 }}>
                                                 <Text style={styles.reqName}>{req.userName || 'Passageiro'}</Text>
-                                                <Text style={styles.reqRating}>⭐ 4.9 • TOT Premium</Text>
+                                                <Text style={styles.reqRating}>
+                                                    ⭐ 4.9 • TOT Premium
+                                                    {tripEtas[String(req.id)] ? ` • ${formatDuration(tripEtas[String(req.id)].etaSeconds)} até a recolha` : ''}
+                                                </Text>
                                             </View>
                                             <Text style={styles.reqPrice}>Kz {req.price}</Text>
                                         </View>